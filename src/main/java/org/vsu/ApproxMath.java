@@ -0,0 +1,174 @@
+package org.vsu;
+
+import java.util.*;
+
+/**
+ * Fast approximations of {@code sin}, {@code cos}, {@code tan} and {@code log} for
+ * workloads that need about 1e-7 relative accuracy rather than {@link Math}'s 1 ulp.
+ * <p>
+ * Bounds are relative to the exact result, measured against {@code Math}:
+ * <ul>
+ *     <li>{@link #sin}, {@link #cos}: below {@code 1e-9} for {@code |x| <= REDUCTION_LIMIT};
+ *     larger arguments fall back to {@code Math}. Arguments are reduced to
+ *     {@code [-pi/2, pi/2]} with a three-part Cody-Waite reduction, so the bound also holds
+ *     near the zeros of the functions.</li>
+ *     <li>{@link #tan}: below {@code 3e-9} on the same range (reduced to {@code [-pi/4, pi/4]}).</li>
+ *     <li>{@link #log}: below {@code 1e-11} for positive normal arguments; zero, negative,
+ *     subnormal, infinite and NaN arguments fall back to {@code Math.log}.</li>
+ * </ul>
+ * {@link #rewrite} selects the approximations per function in a parsed tree.
+ */
+public class ApproxMath {
+    public enum Function{
+        SIN("sin"),
+        COS("cos"),
+        TAN("tan"),
+        LOG("log");
+
+        public final String name;
+
+        Function(String name){
+            this.name = name;
+        }
+
+        public static Function fromName(String name){
+            for (Function f : values()){
+                if (f.name.equals(name)) return f;
+            }
+            return null;
+        }
+    }
+
+    public static final double REDUCTION_LIMIT = 0x1p19 * Math.PI / 2;
+
+    private static final double ONE_OVER_PI = 3.18309886183790671538e-01;
+    private static final double TWO_OVER_PI = 6.36619772367581382433e-01;
+    private static final double PIO2_1 = 1.57079632673412561417e+00;
+    private static final double PIO2_2 = 6.07710050630396597660e-11;
+    private static final double PIO2_2T = 2.02226624879595063154e-21;
+
+    private static final double S1 = -1.0 / 6, S2 = 1.0 / 120, S3 = -1.0 / 5040, S4 = 1.0 / 362880;
+    private static final double C1 = -1.0 / 2, C2 = 1.0 / 24, C3 = -1.0 / 720, C4 = 1.0 / 40320,
+            C5 = -1.0 / 3628800;
+
+    private static final double W1 = -1.0 / 6, W2 = 1.0 / 120, W3 = -1.0 / 5040, W4 = 1.0 / 362880,
+            W5 = -1.0 / 39916800, W6 = 1.0 / 6227020800.0;
+
+    private static final double LN2 = 6.93147180559945286227e-01;
+    private static final int LOG_TABLE_BITS = 7;
+    private static final int LOG_TABLE_SIZE = 1 << LOG_TABLE_BITS;
+    private static final long LOG_OFFSET_BITS = 0x3FE6000000000000L; // 0.6875
+    private static final double[] LOG_INV_C = new double[LOG_TABLE_SIZE];
+    private static final double[] LOG_C = new double[LOG_TABLE_SIZE];
+    private static final double L2 = -1.0 / 2, L3 = 1.0 / 3, L4 = -1.0 / 4, L5 = 1.0 / 5;
+
+    static {
+        for (int i = 0; i < LOG_TABLE_SIZE; i++){
+            double lo = Double.longBitsToDouble(LOG_OFFSET_BITS + ((long) i << (52 - LOG_TABLE_BITS)));
+            double hi = Double.longBitsToDouble(LOG_OFFSET_BITS + ((long) (i + 1) << (52 - LOG_TABLE_BITS)));
+            LOG_INV_C[i] = 2 / (lo + hi);
+            LOG_C[i] = -Math.log(LOG_INV_C[i]);
+        }
+    }
+
+    /**
+     * Returns a copy of {@code expr} whose calls to the given functions use the approximations.
+     * A {@link TieredExpr} is rewritten as its tree.
+     */
+    public static Expr rewrite(Expr expr, Set<Function> functions){
+        if (expr instanceof BinaryExpr b){
+            return new BinaryExpr(b.op(), rewrite(b.left(), functions), rewrite(b.right(), functions));
+        } else if (expr instanceof UnaryExpr u) {
+            return new UnaryExpr(u.op(), rewrite(u.operand(), functions));
+        } else if (expr instanceof IntPowerExpr p) {
+            return new IntPowerExpr(rewrite(p.base(), functions), p.exponent());
+        } else if (expr instanceof FunctionCallExpr f) {
+            List<Expr> args = new ArrayList<>();
+            for (Expr arg : f.args()){
+                args.add(rewrite(arg, functions));
+            }
+            Function function = Function.fromName(f.funcName().toLowerCase());
+            boolean approximate = f.approximate() || function != null && functions.contains(function);
+            return new FunctionCallExpr(f.funcName(), args, approximate);
+        } else if (expr instanceof TieredExpr t) {
+            return rewrite(t.tree(), functions);
+        }
+        return expr;
+    }
+
+    /** {@code sin(x) = (-1)^k * sin(x - k * pi)}, no branch on the quadrant. */
+    public static double sin(double x){
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) return Math.sin(x);
+        int k = (int) Math.rint(x * ONE_OVER_PI);
+        double r = reduce(x, 2 * k);
+        return (1 - ((k & 1) << 1)) * sinWideKernel(r);
+    }
+
+    /** {@code cos(x) = (-1)^(k + 1) * sin(x - (k + 1/2) * pi)}, no branch on the quadrant. */
+    public static double cos(double x){
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) return Math.cos(x);
+        int k = (int) Math.floor(x * ONE_OVER_PI);
+        double r = reduce(x, 2 * k + 1);
+        return (((k & 1) << 1) - 1) * sinWideKernel(r);
+    }
+
+    public static double tan(double x){
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) return Math.tan(x);
+        int k = (int) Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, k);
+        double s = sinKernel(r), c = cosKernel(r);
+        return (k & 1) == 0 ? s / c : -c / s;
+    }
+
+    /**
+     * {@code x = 2^e * z} with {@code z} in {@code [0.6875, 1.375)}; the top mantissa bits
+     * pick the centre {@code c} of one of 128 subintervals from a table, and
+     * {@code log(x) = e * ln2 - log(1 / c) + log1p(z / c - 1)} with {@code |z / c - 1| < 2^-8}.
+     * Arguments close to 1 use the {@code log1p} polynomial directly to keep the relative bound.
+     */
+    public static double log(double x){
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) return Math.log(x);
+        double t = x - 1;
+        if (Math.abs(t) < 0x1p-7) return log1pKernel(t);
+
+        long bits = Double.doubleToRawLongBits(x);
+        long tmp = bits - LOG_OFFSET_BITS;
+        int i = (int) (tmp >>> (52 - LOG_TABLE_BITS)) & (LOG_TABLE_SIZE - 1);
+        long exponent = tmp >> 52;
+        double z = Double.longBitsToDouble(bits - (tmp & 0xFFF0000000000000L));
+        double r = z * LOG_INV_C[i] - 1;
+        return exponent * LN2 + LOG_C[i] + log1pKernel(r);
+    }
+
+    /** {@code x - k * pi/2} with {@code pi/2} split into three parts (fdlibm's medium-size path). */
+    private static double reduce(double x, int k){
+        double r = x - k * PIO2_1;
+        double w = k * PIO2_2;
+        double t = r;
+        r = t - w;
+        w = k * PIO2_2T - ((t - r) - w);
+        return r - w;
+    }
+
+    /** Taylor polynomial to {@code r^13}, error below {@code 7e-10} on {@code [-pi/2, pi/2]}. */
+    private static double sinWideKernel(double r){
+        double z = r * r;
+        return r + r * z * (W1 + z * (W2 + z * (W3 + z * (W4 + z * (W5 + z * W6)))));
+    }
+
+    /** {@code log(1 + r)} to {@code r^5}, relative error below {@code 1e-11} for {@code |r| < 2^-7}. */
+    private static double log1pKernel(double r){
+        double z = r * r;
+        return r + z * (L2 + r * (L3 + r * (L4 + r * L5)));
+    }
+
+    private static double sinKernel(double r){
+        double z = r * r;
+        return r + r * z * (S1 + z * (S2 + z * (S3 + z * S4)));
+    }
+
+    private static double cosKernel(double r){
+        double z = r * r;
+        return 1 + z * (C1 + z * (C2 + z * (C3 + z * (C4 + z * C5))));
+    }
+}
@@ -0,0 +1,308 @@
+package org.vsu;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates an expression over columns of rows instead of a {@code Map} per row.
+ * <p>
+ * Columns are {@link DoubleBuffer}s, so the same code runs over heap arrays
+ * ({@code DoubleBuffer.wrap}) and over direct or memory-mapped buffers without copying the
+ * data onto the heap. Rows are processed in chunks of {@link #CHUNK} through a small set of
+ * reusable scratch arrays, so garbage does not grow with the number of rows.
+ * Each buffer is read from its current position; positions are not changed.
+ * <p>
+ * Results and errors are the same as for {@link Expr#eval}; the overloads taking a
+ * {@link BatchStatus} do not throw for bad rows and record a status per row instead.
+ * An instance keeps scratch state and must not be shared between threads.
+ */
+public class BatchEvaluator {
+    public static final int CHUNK = 1024;
+    static final int FILE_WINDOW = 1 << 24;
+
+    private final Expr expr;
+    private final Set<String> variables;
+    private final List<double[]> scratch = new ArrayList<>();
+    private int scratchTop = 0;
+    private Map<String, DoubleBuffer> columns;
+    private BatchStatus status;
+
+    public BatchEvaluator(Expr expr){
+        this.expr = expr;
+        this.variables = ExprEval.extractVariables(expr);
+    }
+
+    public void evaluate(Map<String, double[]> columns, double[] out){
+        evaluate(wrap(columns), DoubleBuffer.wrap(out));
+    }
+
+    public void evaluate(Map<String, double[]> columns, double[] out, BatchStatus status){
+        evaluate(wrap(columns), DoubleBuffer.wrap(out), status);
+    }
+
+    /** Evaluates {@code out.remaining()} rows and writes them to {@code out} from its position. */
+    public void evaluate(Map<String, DoubleBuffer> columns, DoubleBuffer out){
+        run(columns, out.remaining(), null, out, null, 0);
+    }
+
+    /**
+     * Like {@link #evaluate(Map, DoubleBuffer)}, but rows that would throw evaluate to NaN and
+     * are recorded in {@code status}, which is reset to {@code out.remaining()} rows first.
+     */
+    public void evaluate(Map<String, DoubleBuffer> columns, DoubleBuffer out, BatchStatus status){
+        status.reset(out.remaining());
+        run(columns, out.remaining(), status, out, null, 0);
+    }
+
+    /**
+     * Folds {@code rows} rows into a {@link Reduction} while evaluating, without
+     * materializing the per-row results. Row numbers are relative to the column positions.
+     */
+    public Reduction reduce(Map<String, DoubleBuffer> columns, int rows){
+        Reduction reduction = new Reduction();
+        run(columns, rows, null, null, reduction, 0);
+        return reduction;
+    }
+
+    /**
+     * Like {@link #reduce}, but splits the rows into {@code parts} ranges that are reduced on
+     * the common fork-join pool and merged in row order, so the result does not depend on
+     * scheduling.
+     */
+    public static Reduction reduceParallel(Expr expr, Map<String, DoubleBuffer> columns, int rows, int parts){
+        if (parts <= 0) throw new IllegalArgumentException("Number of parts must be positive: " + parts);
+        BatchEvaluator first = new BatchEvaluator(expr);
+        first.checkColumns(columns, rows, null);
+        long perPart = ((long) rows + parts - 1) / parts;
+        int partRows = (int) Math.max(CHUNK, (perPart + CHUNK - 1) / CHUNK * CHUNK);
+        int count = Math.max(1, (int) (((long) rows + partRows - 1) / partRows));
+        List<Reduction> partials = IntStream.range(0, count).parallel()
+                .mapToObj(part -> {
+                    int start = part * partRows, len = Math.min(partRows, rows - start);
+                    Map<String, DoubleBuffer> slice = new HashMap<>();
+                    for (String var : first.variables){
+                        DoubleBuffer buffer = columns.get(var);
+                        slice.put(var, buffer.slice(buffer.position() + start, len));
+                    }
+                    Reduction reduction = new Reduction();
+                    BatchEvaluator evaluator = part == 0 ? first : new BatchEvaluator(expr);
+                    evaluator.run(slice, len, null, null, reduction, start);
+                    return reduction;
+                })
+                .toList();
+        Reduction result = new Reduction();
+        for (Reduction partial : partials){
+            result.merge(partial);
+        }
+        return result;
+    }
+
+    public static Map<String, DoubleBuffer> wrap(Map<String, double[]> columns){
+        Map<String, DoubleBuffer> buffers = new HashMap<>();
+        for (Map.Entry<String, double[]> column : columns.entrySet()){
+            buffers.put(column.getKey(), DoubleBuffer.wrap(column.getValue()));
+        }
+        return buffers;
+    }
+
+    /** Writes the results to {@code out}, or folds them into {@code reduction} when it is given. */
+    private void run(Map<String, DoubleBuffer> columns, int rows, BatchStatus status, DoubleBuffer out,
+                     Reduction reduction, long firstRow){
+        checkColumns(columns, rows, status);
+
+        this.columns = columns;
+        this.status = status;
+        double[] chunk = acquire();
+        try {
+            for (int start = 0; start < rows; start += CHUNK){
+                int len = Math.min(CHUNK, rows - start);
+                evalChunk(expr, start, len, chunk);
+                if (reduction != null){
+                    reduction.add(chunk, len, firstRow + start);
+                } else {
+                    out.put(out.position() + start, chunk, 0, len);
+                }
+            }
+        } finally {
+            this.columns = null;
+            this.status = null;
+            this.scratchTop = 0;
+        }
+    }
+
+    private void checkColumns(Map<String, DoubleBuffer> columns, int rows, BatchStatus status){
+        for (String var : variables){
+            DoubleBuffer column = columns.get(var);
+            if (column == null){
+                if (status != null) continue;
+                throw new IllegalArgumentException("Unknown variable: " + var);
+            }
+            if (column.remaining() < rows){
+                throw new IllegalArgumentException("Column '" + var + "' has " + column.remaining() + " rows, " +
+                        "but " + rows + " were awaited");
+            }
+        }
+    }
+
+    /**
+     * Evaluates columns stored as raw doubles in files and writes the results to {@code out}.
+     * Files are memory-mapped window by window, so they may be larger than the heap.
+     * The columns are checked before {@code out} is opened, so a bad input leaves it untouched.
+     */
+    public static void evaluateFiles(Expr expr, Map<String, Path> columnFiles, Path out, ByteOrder order)
+            throws IOException {
+        BatchEvaluator evaluator = new BatchEvaluator(expr);
+        Map<String, FileChannel> channels = new HashMap<>();
+        try {
+            long rows = -1;
+            for (String var : evaluator.variables){
+                Path file = columnFiles.get(var);
+                if (file == null) throw new IllegalArgumentException("Unknown variable: " + var);
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.put(var, channel);
+                long size = channel.size() / Double.BYTES;
+                if (rows >= 0 && size != rows){
+                    throw new IllegalArgumentException("Column '" + var + "' has " + size + " rows, " +
+                            "but " + rows + " were awaited");
+                }
+                rows = size;
+            }
+            if (rows < 0) throw new IllegalArgumentException("No column files for a constant expression");
+
+            try (FileChannel output = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (long start = 0; start < rows; start += FILE_WINDOW){
+                    int len = (int) Math.min(FILE_WINDOW, rows - start);
+                    long offset = start * Double.BYTES, bytes = (long) len * Double.BYTES;
+                    Map<String, DoubleBuffer> window = new HashMap<>();
+                    for (Map.Entry<String, FileChannel> channel : channels.entrySet()){
+                        MappedByteBuffer mapped = channel.getValue().map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+                        window.put(channel.getKey(), mapped.order(order).asDoubleBuffer());
+                    }
+                    MappedByteBuffer result = output.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+                    evaluator.evaluate(window, result.order(order).asDoubleBuffer());
+                    result.force();
+                }
+            }
+        } finally {
+            for (FileChannel channel : channels.values()){
+                channel.close();
+            }
+        }
+    }
+
+    private double[] acquire(){
+        if (scratchTop == scratch.size()) scratch.add(new double[CHUNK]);
+        return scratch.get(scratchTop++);
+    }
+
+    private void release(int count){
+        scratchTop -= count;
+    }
+
+    /** Fails every row of the chunk, or throws {@code error} when not in non-throwing mode. */
+    private void failChunk(int start, int len, double[] out, EvalStatus.Code code, Expr node,
+                           RuntimeException error){
+        if (status == null) throw error;
+        for (int i = 0; i < len; i++) out[i] = status.fail(start + i, code, node);
+    }
+
+    private void evalChunk(Expr e, int start, int len, double[] out){
+        if (e instanceof NumberExpr num){
+            Arrays.fill(out, 0, len, num.value());
+        } else if (e instanceof ConstantExpr c) {
+            Arrays.fill(out, 0, len, c.constant().value);
+        } else if (e instanceof VariableExpr v) {
+            DoubleBuffer column = columns.get(v.name());
+            if (column == null){
+                failChunk(start, len, out, EvalStatus.Code.UNKNOWN_VARIABLE, v,
+                        new IllegalArgumentException("Unknown variable: " + v.name()));
+                return;
+            }
+            column.get(column.position() + start, out, 0, len);
+        } else if (e instanceof UnaryExpr u) {
+            evalChunk(u.operand(), start, len, out);
+            if (u.op().equals("-")){
+                for (int i = 0; i < len; i++) out[i] = -out[i];
+            }
+        } else if (e instanceof BinaryExpr b) {
+            evalChunk(b.left(), start, len, out);
+            double[] r = acquire();
+            evalChunk(b.right(), start, len, r);
+            switch (b.op()) {
+                case "+" -> { for (int i = 0; i < len; i++) out[i] += r[i]; }
+                case "-" -> { for (int i = 0; i < len; i++) out[i] -= r[i]; }
+                case "*" -> { for (int i = 0; i < len; i++) out[i] *= r[i]; }
+                case "/" -> { for (int i = 0; i < len; i++) out[i] = BinaryExpr.divide(out[i], r[i]); }
+                case "^" -> { for (int i = 0; i < len; i++) out[i] = Math.pow(out[i], r[i]); }
+                default -> failChunk(start, len, out, EvalStatus.Code.UNKNOWN_OPERATION, b,
+                        new IllegalArgumentException("Unknown operation: " + b.op()));
+            }
+            release(1);
+        } else if (e instanceof IntPowerExpr p) {
+            evalChunk(p.base(), start, len, out);
+            int n = p.exponent();
+            for (int i = 0; i < len; i++) out[i] = IntPowerExpr.pow(out[i], n);
+        } else if (e instanceof FunctionCallExpr f) {
+            evalFunction(f, start, len, out);
+        } else if (e instanceof TieredExpr t) {
+            evalChunk(t.tree(), start, len, out);
+        } else {
+            throw new IllegalArgumentException("Unsupported expression: " + e);
+        }
+    }
+
+    private void evalFunction(FunctionCallExpr f, int start, int len, double[] out){
+        String name = f.funcName().toLowerCase();
+        List<Expr> args = f.args();
+        int expected = FunctionCallExpr.arity(name);
+        if (expected != args.size()){
+            // Arguments first, like the scalar path, so their failures are reported before the call's
+            for (Expr arg : args){
+                evalChunk(arg, start, len, out);
+            }
+            if (status == null) FunctionCallExpr.checkArity(f.funcName(), args.size());
+            failChunk(start, len, out, expected < 0 ? EvalStatus.Code.UNKNOWN_FUNCTION : EvalStatus.Code.WRONG_ARITY,
+                    f, null);
+            return;
+        }
+        boolean approximate = f.approximate();
+
+        evalChunk(args.getFirst(), start, len, out);
+        switch (name) {
+            case "sin" -> { for (int i = 0; i < len; i++) out[i] = FunctionCallExpr.sin(out[i], approximate); }
+            case "cos" -> { for (int i = 0; i < len; i++) out[i] = FunctionCallExpr.cos(out[i], approximate); }
+            case "tan" -> { for (int i = 0; i < len; i++) out[i] = FunctionCallExpr.tan(out[i], approximate); }
+            case "sqrt" -> {
+                for (int i = 0; i < len; i++){
+                    out[i] = out[i] < 0 && status != null ? status.fail(start + i, EvalStatus.Code.NEGATIVE_SQRT, f)
+                            : FunctionCallExpr.sqrt(out[i]);
+                }
+            }
+            case "log" -> {
+                for (int i = 0; i < len; i++){
+                    out[i] = out[i] <= 0 && status != null ? status.fail(start + i, EvalStatus.Code.NON_POSITIVE_LOG, f)
+                            : FunctionCallExpr.log(out[i], approximate);
+                }
+            }
+            case "abs" -> { for (int i = 0; i < len; i++) out[i] = Math.abs(out[i]); }
+            default -> {
+                double[] lo = acquire(), hi = acquire();
+                evalChunk(args.get(1), start, len, lo);
+                evalChunk(args.get(2), start, len, hi);
+                for (int i = 0; i < len; i++){
+                    out[i] = lo[i] > hi[i] && status != null ? status.fail(start + i, EvalStatus.Code.CLAMP_BOUNDS, f)
+                            : FunctionCallExpr.clamp(out[i], lo[i], hi[i]);
+                }
+                release(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.vsu;
+
+import java.util.Arrays;
+
+/**
+ * Per-row outcome of a non-throwing batch evaluation, see
+ * {@link BatchEvaluator#evaluate(java.util.Map, java.nio.DoubleBuffer, BatchStatus)}.
+ * Failed rows evaluate to NaN; only the first failure of each row is kept.
+ * The arrays are reused between batches and only grow.
+ */
+public class BatchStatus {
+    private static final EvalStatus.Code[] CODES = EvalStatus.Code.values();
+
+    private byte[] codes;
+    private Expr[] nodes;
+    private int rows = 0;
+    private int failures = 0;
+
+    public BatchStatus(int capacity){
+        this.codes = new byte[capacity];
+        this.nodes = new Expr[capacity];
+    }
+
+    public int rows(){ return rows; }
+    public int failures(){ return failures; }
+
+    public EvalStatus.Code code(int row){
+        return CODES[codes[checkRow(row)]];
+    }
+
+    public Expr node(int row){
+        return nodes[checkRow(row)];
+    }
+
+    public boolean ok(int row){
+        return codes[checkRow(row)] == 0;
+    }
+
+    void reset(int rows){
+        if (codes.length < rows){
+            codes = new byte[rows];
+            nodes = new Expr[rows];
+        } else {
+            Arrays.fill(codes, 0, this.rows, (byte) 0);
+            Arrays.fill(nodes, 0, this.rows, null);
+        }
+        this.rows = rows;
+        this.failures = 0;
+    }
+
+    double fail(int row, EvalStatus.Code code, Expr node){
+        if (codes[row] == 0){
+            codes[row] = (byte) code.ordinal();
+            nodes[row] = node;
+            failures++;
+        }
+        return Double.NaN;
+    }
+
+    private int checkRow(int row){
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Row " + row + " out of " + rows);
+        return row;
+    }
+}
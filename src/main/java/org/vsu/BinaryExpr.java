@@ -11,30 +11,47 @@ public class BinaryExpr implements Expr{
         this.right = right;
     }
 
+    public String op(){ return op; }
     public Expr left(){ return left; }
     public Expr right(){ return right; }
 
     public double eval(java.util.Map<String, Double> variables){
         double l = left.eval(variables);
         double r = right.eval(variables);
+        return apply(op, l, r);
+    }
+
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        double l = left.eval(variables, status);
+        double r = right.eval(variables, status);
+        return switch (op) {
+            case "+", "-", "*", "/", "^" -> apply(op, l, r);
+            default -> status.fail(EvalStatus.Code.UNKNOWN_OPERATION, this);
+        };
+    }
+
+    static double apply(String op, double l, double r){
         return switch (op) {
             case "+" -> l + r;
             case "-" -> l - r;
             case "*" -> l * r;
-            case "/" -> {
-                if (r == 0.0) {
-                    if (l == 0.0) {
-                        yield  Double.NaN;
-                    }
-                    yield l > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
-                }
-                yield l / r;
-            }
+            case "/" -> divide(l, r);
             case "^" -> Math.pow(l, r);
             default -> throw new IllegalArgumentException("Unknown operation: " + op);
         };
     }
 
+    static double divide(double l, double r){
+        if (r == 0.0) {
+            if (l == 0.0) {
+                return  Double.NaN;
+            }
+            return l > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        return l / r;
+    }
+
     @Override
     public String toString(){
         return "(" + left + " " + op + " " + right + ")";
@@ -27,11 +27,18 @@ public class ConstantExpr implements Expr{
         this.constant = constant;
     }
 
+    public Constant constant(){ return constant; }
+
     @Override
     public double eval(java.util.Map<String, Double> variables){
         return constant.value;
     }
 
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        return constant.value;
+    }
+
     @Override
     public String toString(){
         return constant.name;
@@ -0,0 +1,49 @@
+package org.vsu;
+
+/**
+ * Outcome of a non-throwing evaluation, see {@link Expr#eval(java.util.Map, EvalStatus)}.
+ * Only the first failure is kept; the instance can be reused after {@link #reset()}.
+ */
+public class EvalStatus {
+    public enum Code{
+        OK,
+        NEGATIVE_SQRT,
+        NON_POSITIVE_LOG,
+        CLAMP_BOUNDS,
+        WRONG_ARITY,
+        UNKNOWN_FUNCTION,
+        UNKNOWN_VARIABLE,
+        UNKNOWN_OPERATION,
+        /** An {@link Expr} without its own non-throwing eval threw {@link IllegalArgumentException}. */
+        EVALUATION_ERROR
+    }
+
+    private Code code = Code.OK;
+    private Expr node;
+
+    public Code code(){ return code; }
+    public Expr node(){ return node; }
+
+    public boolean ok(){
+        return code == Code.OK;
+    }
+
+    public void reset(){
+        code = Code.OK;
+        node = null;
+    }
+
+    /** Records the failure unless an earlier one is already recorded and returns NaN. */
+    double fail(Code code, Expr node){
+        if (this.code == Code.OK){
+            this.code = code;
+            this.node = node;
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public String toString(){
+        return ok() ? code.toString() : code + " at " + node;
+    }
+}
@@ -3,6 +3,21 @@ package org.vsu;
 public interface Expr {
     double eval(java.util.Map<String, Double> variables);
 
+    /**
+     * Non-throwing variant of {@link #eval(java.util.Map)}: conditions that would throw
+     * evaluate to NaN and are recorded in {@code status} together with the failing node.
+     * The default runs {@link #eval(java.util.Map)} and records an
+     * {@link IllegalArgumentException} as {@link EvalStatus.Code#EVALUATION_ERROR} of this node;
+     * the built-in nodes override it to report the exact failure without throwing.
+     */
+    default double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        try {
+            return eval(variables);
+        } catch (IllegalArgumentException e){
+            return status.fail(EvalStatus.Code.EVALUATION_ERROR, this);
+        }
+    }
+
     @Override
     String toString();
 }
@@ -0,0 +1,55 @@
+package org.vsu;
+
+/**
+ * Static cost estimate of evaluating a tree once, for admission control and for
+ * balancing batches. Units are roughly "one floating point add"; the weights only
+ * need to be right relative to each other.
+ */
+public class ExprCost {
+    static final long LEAF = 1;
+    static final long VARIABLE = 4;
+    static final long ARITHMETIC = 1;
+    static final long DIVISION = 4;
+    static final long POW = 20;
+    static final long CALL = 5;
+
+    public static long estimate(Expr expr){
+        if (expr instanceof VariableExpr){
+            return VARIABLE;
+        } else if (expr instanceof BinaryExpr b) {
+            long op = switch (b.op()) {
+                case "/" -> DIVISION;
+                case "^" -> POW;
+                default -> ARITHMETIC;
+            };
+            return op + estimate(b.left()) + estimate(b.right());
+        } else if (expr instanceof UnaryExpr u) {
+            return ARITHMETIC + estimate(u.operand());
+        } else if (expr instanceof IntPowerExpr p) {
+            // Squarings plus one multiplication per set bit after the first
+            int n = p.exponent();
+            long multiplications = n == 0 ? 0 : (32 - Integer.numberOfLeadingZeros(n)) + Integer.bitCount(n) - 2;
+            return ARITHMETIC * Math.max(multiplications, 1) + estimate(p.base());
+        } else if (expr instanceof FunctionCallExpr f) {
+            long cost = CALL + function(f.funcName().toLowerCase(), f.approximate());
+            for (Expr arg : f.args()){
+                cost += estimate(arg);
+            }
+            return cost;
+        } else if (expr instanceof TieredExpr t) {
+            return estimate(t.tree());
+        }
+        return LEAF;
+    }
+
+    static long function(String name, boolean approximate){
+        return switch (name) {
+            case "sin", "cos" -> approximate ? 12 : 20;
+            case "tan" -> approximate ? 15 : 25;
+            case "log" -> approximate ? 10 : 20;
+            case "sqrt" -> 4;
+            case "clamp" -> 3;
+            default -> 1;
+        };
+    }
+}
@@ -4,9 +4,18 @@ import java.util.*;
 
 public class ExprEval {
     public static Expr parse(String expression){
-        Lexer lexer = new Lexer(expression);
+        return parse(expression, ParseLimits.UNLIMITED);
+    }
+
+    public static Expr parse(String expression, ParseLimits limits){
+        return parse(expression, limits, new ExprInterner());
+    }
+
+    /** Parses with a caller-owned interner, so that all formulas parsed with it share their leaves. */
+    public static Expr parse(String expression, ParseLimits limits, ExprInterner interner){
+        Lexer lexer = new Lexer(expression, limits);
         List<Token> tokens = lexer.tokenize();
-        Parser parser = new Parser(tokens);
+        Parser parser = new Parser(tokens, limits, interner);
         return parser.parse();
     }
 
@@ -14,6 +23,10 @@ public class ExprEval {
         return ast.eval(variables);
     }
 
+    public static double evaluate(Expr ast, Map<String, Double> variables, EvalStatus status){
+        return ast.eval(variables, status);
+    }
+
     public static double evaluateInteractive(Expr ast){
         Set<String> vars = extractVariables(ast);
         Map<String, Double> context = promtForVariables(vars);
@@ -38,10 +51,14 @@ public class ExprEval {
             extractVarsRecursive(b.right(), vars);
         } else if (expr instanceof UnaryExpr u) {
             extractVarsRecursive(u.operand(), vars);
+        } else if (expr instanceof IntPowerExpr p) {
+            extractVarsRecursive(p.base(), vars);
         } else if (expr instanceof FunctionCallExpr f) {
             for (Expr arg : f.args()){
                 extractVarsRecursive(arg, vars);
             }
+        } else if (expr instanceof TieredExpr t) {
+            extractVarsRecursive(t.tree(), vars);
         }
     }
 
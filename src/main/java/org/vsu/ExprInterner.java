@@ -0,0 +1,86 @@
+package org.vsu;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of immutable AST leaves, used by {@link Parser} so that large catalogs
+ * of parsed formulas share literals, variables, function names and leaf-only argument lists
+ * instead of holding a copy per occurrence.
+ * <p>
+ * Constants and the integer literals {@code 0..SMALL_INTEGERS-1} come from fixed process-wide
+ * caches. Everything else lives in the tables of one interner: parse a catalog with a single
+ * instance ({@link ExprEval#parse(String, ParseLimits, ExprInterner)}) and drop it once the
+ * catalog is loaded. The trees keep sharing their nodes, while the tables, and whatever
+ * one-off or untrusted input put into them, are collected with the interner.
+ * An interner may be used by several parsing threads at once.
+ */
+public class ExprInterner {
+    static final int SMALL_INTEGERS = 1024;
+
+    private static final ConstantExpr[] CONSTANTS = new ConstantExpr[ConstantExpr.Constant.values().length];
+    private static final NumberExpr[] INTEGERS = new NumberExpr[SMALL_INTEGERS];
+
+    private final Map<Long, NumberExpr> numbers = new ConcurrentHashMap<>();
+    private final Map<String, VariableExpr> variables = new ConcurrentHashMap<>();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+    private final Map<List<Expr>, List<Expr>> args = new ConcurrentHashMap<>();
+
+    static {
+        for (ConstantExpr.Constant c : ConstantExpr.Constant.values()){
+            CONSTANTS[c.ordinal()] = new ConstantExpr(c);
+        }
+        for (int i = 0; i < SMALL_INTEGERS; i++){
+            INTEGERS[i] = new NumberExpr(i);
+        }
+    }
+
+    public static ConstantExpr constant(ConstantExpr.Constant constant){
+        return CONSTANTS[constant.ordinal()];
+    }
+
+    /** Process-wide instance for a small non-negative integer, null for any other value. */
+    public static NumberExpr smallInteger(double value){
+        if (value >= 0 && value < SMALL_INTEGERS && value == (int) value
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)){
+            return INTEGERS[(int) value];
+        }
+        return null;
+    }
+
+    public NumberExpr number(double value){
+        NumberExpr small = smallInteger(value);
+        if (small != null) return small;
+        return numbers.computeIfAbsent(Double.doubleToRawLongBits(value), bits -> new NumberExpr(value));
+    }
+
+    public VariableExpr variable(String name){
+        return variables.computeIfAbsent(name, VariableExpr::new);
+    }
+
+    public String functionName(String name){
+        return names.computeIfAbsent(name, n -> n);
+    }
+
+    /**
+     * Compact immutable copy of {@code args}. Lists made only of leaves of this interner are
+     * shared: nodes compare by identity, so equal lists of canonical leaves are interchangeable.
+     */
+    public List<Expr> args(List<Expr> args){
+        List<Expr> copy = List.copyOf(args);
+        for (Expr arg : copy){
+            if (!isCanonicalLeaf(arg)) return copy;
+        }
+        return this.args.computeIfAbsent(copy, key -> key);
+    }
+
+    private boolean isCanonicalLeaf(Expr expr){
+        if (expr instanceof ConstantExpr c) return CONSTANTS[c.constant().ordinal()] == c;
+        if (expr instanceof NumberExpr n){
+            NumberExpr small = smallInteger(n.value());
+            return (small != null ? small : numbers.get(Double.doubleToRawLongBits(n.value()))) == n;
+        }
+        if (expr instanceof VariableExpr v) return variables.get(v.name()) == v;
+        return false;
+    }
+}
@@ -0,0 +1,177 @@
+package org.vsu;
+
+import java.util.*;
+
+/**
+ * Rewrite pass producing an equivalent, cheaper tree.
+ * <ul>
+ *     <li>{@code e ^ n} with an integer literal {@code 0 <= n <= MAX_EXPONENT} becomes an
+ *     {@link IntPowerExpr} (see there for the ulp bound against {@code Math.pow}).</li>
+ *     <li>A sum of terms {@code c * x ^ k} in a single variable {@code x}, where the
+ *     coefficients do not depend on {@code x}, is rewritten in Horner form.</li>
+ * </ul>
+ * Horner form reassociates the sum, so its error is not bounded in ulps of the
+ * term-by-term result: both are within {@code 2 * d * 2^-53 * sum(|c_k| * |x|^k)}
+ * of the exact value for degree {@code d}. Without cancellation between terms this
+ * is a few ulps; near a root of the polynomial the relative difference can be large.
+ * <p>
+ * A {@link TieredExpr} is optimized as its tree; wrap the result again to keep tiering.
+ */
+public class ExprOptimizer {
+    public static final int MAX_EXPONENT = 16;
+
+    public static Expr optimize(Expr expr){
+        if (expr instanceof BinaryExpr b){
+            if (isSum(b)){
+                Expr horner = tryHorner(b);
+                if (horner != null) return horner;
+            }
+            Expr left = optimize(b.left());
+            if (b.op().equals("^")){
+                int n = smallExponent(b.right());
+                if (n >= 0) return new IntPowerExpr(left, n);
+            }
+            return new BinaryExpr(b.op(), left, optimize(b.right()));
+        } else if (expr instanceof UnaryExpr u) {
+            return new UnaryExpr(u.op(), optimize(u.operand()));
+        } else if (expr instanceof FunctionCallExpr f) {
+            List<Expr> args = new ArrayList<>();
+            for (Expr arg : f.args()){
+                args.add(optimize(arg));
+            }
+            return new FunctionCallExpr(f.funcName(), args, f.approximate());
+        } else if (expr instanceof IntPowerExpr p) {
+            return new IntPowerExpr(optimize(p.base()), p.exponent());
+        } else if (expr instanceof TieredExpr t) {
+            return optimize(t.tree());
+        }
+        return expr;
+    }
+
+    private static boolean isSum(BinaryExpr b){
+        return b.op().equals("+") || b.op().equals("-");
+    }
+
+    private static int smallExponent(Expr expr){
+        if (expr instanceof NumberExpr n){
+            double v = n.value();
+            if (v >= 0 && v <= MAX_EXPONENT && v == Math.rint(v)) return (int) v;
+        }
+        return -1;
+    }
+
+    /** Coefficient {@code null} stands for 1. */
+    private record Term(Expr coef, int degree, boolean negative){}
+
+    private static Expr tryHorner(BinaryExpr sum){
+        List<Expr> summands = new ArrayList<>();
+        List<Boolean> signs = new ArrayList<>();
+        flattenSum(sum, false, summands, signs);
+
+        String bestVar = null;
+        TreeMap<Integer, List<Term>> best = null;
+        for (String var : ExprEval.extractVariables(sum)){
+            TreeMap<Integer, List<Term>> byDegree = new TreeMap<>(Comparator.reverseOrder());
+            boolean ok = true;
+            for (int i = 0; i < summands.size() && ok; i++){
+                Term t = decompose(summands.get(i), var);
+                if (t == null || t.degree > MAX_EXPONENT){
+                    ok = false;
+                } else {
+                    boolean neg = t.negative != signs.get(i);
+                    byDegree.computeIfAbsent(t.degree, k -> new ArrayList<>()).add(new Term(t.coef, t.degree, neg));
+                }
+            }
+            if (ok && byDegree.size() >= 2 && byDegree.firstKey() >= 2
+                    && (best == null || byDegree.firstKey() > best.firstKey())){
+                best = byDegree;
+                bestVar = var;
+            }
+        }
+        return best == null ? null : buildHorner(bestVar, best);
+    }
+
+    private static void flattenSum(Expr expr, boolean negative, List<Expr> summands, List<Boolean> signs){
+        if (expr instanceof BinaryExpr b && isSum(b)){
+            flattenSum(b.left(), negative, summands, signs);
+            flattenSum(b.right(), negative != b.op().equals("-"), summands, signs);
+        } else {
+            summands.add(expr);
+            signs.add(negative);
+        }
+    }
+
+    private static Term decompose(Expr expr, String var){
+        if (!ExprEval.extractVariables(expr).contains(var)){
+            return new Term(expr, 0, false);
+        }
+        if (expr instanceof VariableExpr){
+            return new Term(null, 1, false);
+        } else if (expr instanceof BinaryExpr b && b.op().equals("^")) {
+            int n = smallExponent(b.right());
+            if (n >= 0 && b.left() instanceof VariableExpr) return new Term(null, n, false);
+        } else if (expr instanceof IntPowerExpr p) {
+            if (p.base() instanceof VariableExpr) return new Term(null, p.exponent(), false);
+        } else if (expr instanceof BinaryExpr b && b.op().equals("*")) {
+            Term l = decompose(b.left(), var);
+            Term r = decompose(b.right(), var);
+            if (l == null || r == null) return null;
+            Expr coef = l.coef == null ? r.coef : r.coef == null ? l.coef : new BinaryExpr("*", l.coef, r.coef);
+            return new Term(coef, l.degree + r.degree, l.negative != r.negative);
+        } else if (expr instanceof BinaryExpr b && b.op().equals("/")) {
+            if (ExprEval.extractVariables(b.right()).contains(var)) return null;
+            Term l = decompose(b.left(), var);
+            if (l == null) return null;
+            Expr coef = new BinaryExpr("/", l.coef == null ? new NumberExpr(1) : l.coef, b.right());
+            return new Term(coef, l.degree, l.negative);
+        } else if (expr instanceof UnaryExpr u) {
+            Term t = decompose(u.operand(), var);
+            if (t == null) return null;
+            return new Term(t.coef, t.degree, t.negative != u.op().equals("-"));
+        }
+        return null;
+    }
+
+    private static Expr buildHorner(String var, TreeMap<Integer, List<Term>> byDegree){
+        Expr x = new VariableExpr(var);
+        Expr acc = null;
+        int prev = -1;
+        for (Map.Entry<Integer, List<Term>> entry : byDegree.entrySet()){
+            Term c = combine(entry.getValue());
+            if (prev < 0){
+                acc = c.coef == null ? null : c.negative ? new UnaryExpr("-", c.coef) : c.coef;
+                if (c.coef == null && c.negative){
+                    acc = new UnaryExpr("-", new NumberExpr(1));
+                }
+            } else {
+                acc = times(acc, power(x, prev - entry.getKey()));
+                Expr coef = c.coef == null ? new NumberExpr(1) : c.coef;
+                acc = new BinaryExpr(c.negative ? "-" : "+", acc, coef);
+            }
+            prev = entry.getKey();
+        }
+        return prev > 0 ? times(acc, power(x, prev)) : acc;
+    }
+
+    private static Term combine(List<Term> terms){
+        Term first = terms.getFirst();
+        Expr coef = first.coef == null ? null : optimize(first.coef);
+        if (terms.size() == 1) return new Term(coef, first.degree, first.negative);
+
+        Expr sum = coef == null ? new NumberExpr(1) : coef;
+        if (first.negative) sum = new UnaryExpr("-", sum);
+        for (Term t : terms.subList(1, terms.size())){
+            Expr c = t.coef == null ? new NumberExpr(1) : optimize(t.coef);
+            sum = new BinaryExpr(t.negative ? "-" : "+", sum, c);
+        }
+        return new Term(sum, first.degree, false);
+    }
+
+    private static Expr times(Expr acc, Expr factor){
+        return acc == null ? factor : new BinaryExpr("*", acc, factor);
+    }
+
+    private static Expr power(Expr x, int n){
+        return n == 1 ? x : new IntPowerExpr(x, n);
+    }
+}
@@ -5,66 +5,112 @@ import java.util.List;
 public class FunctionCallExpr implements Expr{
     private final String funcName;
     private final List<Expr> args;
+    private final boolean approximate;
 
     public FunctionCallExpr(String funcName, List<Expr> args){
+        this(funcName, args, false);
+    }
+
+    /** With {@code approximate} set, sin, cos, tan and log use {@link ApproxMath}. */
+    public FunctionCallExpr(String funcName, List<Expr> args, boolean approximate){
         this.funcName = funcName;
         this.args = args;
+        this.approximate = approximate;
     }
 
+    public String funcName(){ return funcName; }
     public List<Expr> args(){ return args; }
+    public boolean approximate(){ return approximate; }
 
     @Override
     public double eval(java.util.Map<String, Double> variables){
         java.util.List<Double> evaluatedArgs = args.stream()
                 .map(expr -> expr.eval(variables))
                 .toList();
+        checkArity(funcName, evaluatedArgs.size());
 
         return switch (funcName.toLowerCase()){
-            case "sin" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                yield Math.sin(evaluatedArgs.getFirst());
-            }
-            case "cos" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                yield Math.cos(evaluatedArgs.getFirst());
-            }
-            case "tan" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                yield Math.tan(evaluatedArgs.getFirst());
-            }
-            case "sqrt" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                double x = evaluatedArgs.getFirst();
-                if (x < 0) throw new IllegalArgumentException("Sqrt of a negative number: " + x);
-                yield Math.sqrt(x);
-            }
-            case "log" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                double x = evaluatedArgs.getFirst();
-                if (x <= 0) throw new IllegalArgumentException("Log of a non-positive number: " + x);
-                yield Math.log(x);
-            }
-            case "abs" -> {
-                checkArgs(1, evaluatedArgs, funcName);
-                yield  Math.abs(evaluatedArgs.getFirst());
-            }
-            case "clamp" -> {
-                checkArgs(3, evaluatedArgs, funcName);
-                double v = evaluatedArgs.getFirst(), lo = evaluatedArgs.get(1), hi = evaluatedArgs.get(2);
-                if (lo > hi) throw new IllegalArgumentException("Clamp: lower > higher");
-                yield Math.max(lo, Math.min(hi, v));
-            }
+            case "sin" -> sin(evaluatedArgs.getFirst(), approximate);
+            case "cos" -> cos(evaluatedArgs.getFirst(), approximate);
+            case "tan" -> tan(evaluatedArgs.getFirst(), approximate);
+            case "sqrt" -> sqrt(evaluatedArgs.getFirst());
+            case "log" -> log(evaluatedArgs.getFirst(), approximate);
+            case "abs" -> Math.abs(evaluatedArgs.getFirst());
+            case "clamp" -> clamp(evaluatedArgs.getFirst(), evaluatedArgs.get(1), evaluatedArgs.get(2));
             default -> throw new IllegalArgumentException("Unknown function: " + funcName);
         };
     }
 
-    private void checkArgs(int expected, java.util.List<Double> actual, String func){
-        if (actual.size() != expected){
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        double[] values = new double[args.size()];
+        for (int i = 0; i < values.length; i++){
+            values[i] = args.get(i).eval(variables, status);
+        }
+
+        int expected = arity(funcName);
+        if (expected < 0) return status.fail(EvalStatus.Code.UNKNOWN_FUNCTION, this);
+        if (values.length != expected) return status.fail(EvalStatus.Code.WRONG_ARITY, this);
+
+        double x = values[0];
+        return switch (funcName.toLowerCase()){
+            case "sin" -> sin(x, approximate);
+            case "cos" -> cos(x, approximate);
+            case "tan" -> tan(x, approximate);
+            case "sqrt" -> x < 0 ? status.fail(EvalStatus.Code.NEGATIVE_SQRT, this) : Math.sqrt(x);
+            case "log" -> x <= 0 ? status.fail(EvalStatus.Code.NON_POSITIVE_LOG, this) : log(x, approximate);
+            case "abs" -> Math.abs(x);
+            default -> values[1] > values[2] ? status.fail(EvalStatus.Code.CLAMP_BOUNDS, this)
+                    : Math.max(values[1], Math.min(values[2], x));
+        };
+    }
+
+    /** Throws for an unknown function or a wrong number of arguments. */
+    static void checkArity(String func, int actual){
+        int expected = arity(func);
+        if (expected < 0) throw new IllegalArgumentException("Unknown function: " + func);
+        if (actual != expected){
             throw new IllegalArgumentException("Function '" + func + "' awaits " + expected + " arguments, " +
-                    "but received: " + actual.size());
+                    "but received: " + actual);
         }
     }
 
+    /** Number of arguments of a known function, -1 for an unknown one. */
+    static int arity(String funcName){
+        return switch (funcName.toLowerCase()){
+            case "sin", "cos", "tan", "sqrt", "log", "abs" -> 1;
+            case "clamp" -> 3;
+            default -> -1;
+        };
+    }
+
+    static double sqrt(double x){
+        if (x < 0) throw new IllegalArgumentException("Sqrt of a negative number: " + x);
+        return Math.sqrt(x);
+    }
+
+    static double log(double x, boolean approximate){
+        if (x <= 0) throw new IllegalArgumentException("Log of a non-positive number: " + x);
+        return approximate ? ApproxMath.log(x) : Math.log(x);
+    }
+
+    static double sin(double x, boolean approximate){
+        return approximate ? ApproxMath.sin(x) : Math.sin(x);
+    }
+
+    static double cos(double x, boolean approximate){
+        return approximate ? ApproxMath.cos(x) : Math.cos(x);
+    }
+
+    static double tan(double x, boolean approximate){
+        return approximate ? ApproxMath.tan(x) : Math.tan(x);
+    }
+
+    static double clamp(double v, double lo, double hi){
+        if (lo > hi) throw new IllegalArgumentException("Clamp: lower > higher");
+        return Math.max(lo, Math.min(hi, v));
+    }
+
     @Override
     public String toString(){
         String argsStr = args.stream().map(Expr::toString).reduce((a, b) -> a + ", " + b)
@@ -0,0 +1,49 @@
+package org.vsu;
+
+/**
+ * {@code base ^ exponent} for a small non-negative integer exponent, evaluated by
+ * repeated squaring instead of {@link Math#pow}.
+ * <p>
+ * The multiplication chain has a relative error of at most {@code (n - 1) * 2^-53},
+ * so for normal results it is within {@code n - 1} ulps of the exact power and
+ * within {@code n} ulps of {@code Math.pow} (which is itself allowed 1 ulp).
+ * For {@code n <= 2} the result is correctly rounded.
+ */
+public class IntPowerExpr implements Expr{
+    private final Expr base;
+    private final int exponent;
+
+    public IntPowerExpr(Expr base, int exponent){
+        if (exponent < 0) throw new IllegalArgumentException("Negative exponent: " + exponent);
+        this.base = base;
+        this.exponent = exponent;
+    }
+
+    public Expr base(){ return base; }
+    public int exponent(){ return exponent; }
+
+    @Override
+    public double eval(java.util.Map<String, Double> variables){
+        return pow(base.eval(variables), exponent);
+    }
+
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        return pow(base.eval(variables, status), exponent);
+    }
+
+    static double pow(double x, int n){
+        double result = 1.0;
+        while (n > 0){
+            if ((n & 1) != 0) result *= x;
+            n >>= 1;
+            if (n > 0) x *= x;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString(){
+        return "(" + base + " ^ " + exponent + ")";
+    }
+}
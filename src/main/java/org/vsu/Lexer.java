@@ -4,15 +4,28 @@ import java.util.*;
 
 public class Lexer {
     private final String input;
+    private final ParseLimits limits;
     private int pos = 0;
 
     public Lexer(String input){
+        this(input, ParseLimits.UNLIMITED);
+    }
+
+    public Lexer(String input, ParseLimits limits){
+        if (input.length() > limits.maxLength()){
+            throw new IllegalArgumentException("Expression is too long: " + input.length() +
+                    " characters, limit is " + limits.maxLength());
+        }
         this.input = input.replaceAll("\\s+", "");
+        this.limits = limits;
     }
 
     public List<Token> tokenize(){
         List<Token> tokens = new ArrayList<>();
         while (pos < input.length()){
+            if (tokens.size() >= limits.maxTokens()){
+                throw new IllegalArgumentException("Too many tokens, limit is " + limits.maxTokens());
+            }
             char c = input.charAt(pos);
 
             if (c >= '0' && c <= '9' || c == '.'){
@@ -7,11 +7,18 @@ public class NumberExpr implements Expr{
         this.value = value;
     }
 
+    public double value(){ return value; }
+
     @Override
     public double eval(java.util.Map<String, Double> variables){
         return value;
     }
 
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        return value;
+    }
+
     @Override
     public String toString(){
         if (value == (long) value){
@@ -0,0 +1,31 @@
+package org.vsu;
+
+/**
+ * Admission limits applied while lexing and parsing, so that oversized or pathological
+ * input fails fast with {@link IllegalArgumentException} instead of tying up a worker.
+ */
+public class ParseLimits {
+    public static final ParseLimits UNLIMITED =
+            new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    public static final ParseLimits UNTRUSTED = new ParseLimits(10_000, 2_000, 2_000, 100);
+
+    private final int maxLength;
+    private final int maxTokens;
+    private final int maxNodes;
+    private final int maxDepth;
+
+    public ParseLimits(int maxLength, int maxTokens, int maxNodes, int maxDepth){
+        if (maxLength <= 0 || maxTokens <= 0 || maxNodes <= 0 || maxDepth <= 0){
+            throw new IllegalArgumentException("Parse limits must be positive");
+        }
+        this.maxLength = maxLength;
+        this.maxTokens = maxTokens;
+        this.maxNodes = maxNodes;
+        this.maxDepth = maxDepth;
+    }
+
+    public int maxLength(){ return maxLength; }
+    public int maxTokens(){ return maxTokens; }
+    public int maxNodes(){ return maxNodes; }
+    public int maxDepth(){ return maxDepth; }
+}
@@ -4,10 +4,24 @@ import java.util.*;
 
 public class Parser {
     private final List<Token> tokens;
+    private final ParseLimits limits;
+    private final ExprInterner interner;
     private int pos = 0;
+    private int nodes = 0;
+    private int depth = 0;
 
     public Parser(List<Token> tokens){
+        this(tokens, ParseLimits.UNLIMITED);
+    }
+
+    public Parser(List<Token> tokens, ParseLimits limits){
+        this(tokens, limits, new ExprInterner());
+    }
+
+    public Parser(List<Token> tokens, ParseLimits limits, ExprInterner interner){
         this.tokens = tokens;
+        this.limits = limits;
+        this.interner = interner;
     }
 
     public Expr parse(){
@@ -27,7 +41,7 @@ public class Parser {
                 String op = tokens.get(pos).value;
                 pos++;
                 Expr right = parseMultDiv();
-                left = new BinaryExpr(op, left, right);
+                left = node(new BinaryExpr(op, left, right));
             } else {
                 break;
             }
@@ -43,7 +57,7 @@ public class Parser {
                 String op = tokens.get(pos).value;
                 pos++;
                 Expr right = parsePower();
-                left = new BinaryExpr(op, left, right);
+                left = node(new BinaryExpr(op, left, right));
             } else {
                 break;
             }
@@ -52,12 +66,17 @@ public class Parser {
     }
 
     private Expr parsePower(){
+        //Every nested construct passes through here
+        if (++depth > limits.maxDepth()){
+            throw new IllegalArgumentException("Expression is nested too deeply, limit is " + limits.maxDepth());
+        }
         Expr left = parseUnary();
         while (pos < tokens.size() && tokens.get(pos).type == Token.Type.POW){
             pos++;
             Expr right = parsePower();
-            left = new BinaryExpr("^", left, right);
+            left = node(new BinaryExpr("^", left, right));
         }
+        depth--;
         return left;
     }
 
@@ -68,7 +87,7 @@ public class Parser {
                 String op = token.value;
                 pos++;
                 Expr operand = parsePower();
-                return new UnaryExpr(op, operand);
+                return node(new UnaryExpr(op, operand));
             }
         }
         return parsePrimary();
@@ -83,14 +102,14 @@ public class Parser {
         switch (token.type){
             case NUMBER -> {
                 pos++;
-                return new NumberExpr(Double.parseDouble(token.value));
+                return node(interner.number(Double.parseDouble(token.value)));
             }
             case IDENTIFIER -> {
                 String name = token.value;
                 ConstantExpr.Constant constant = ConstantExpr.Constant.fromName(name);
                 if (constant != null){
                     pos++;
-                    return new ConstantExpr(constant);
+                    return node(ExprInterner.constant(constant));
                 }
 
                 //Функция?
@@ -100,7 +119,7 @@ public class Parser {
 
                 //Если нет, значит переменная
                 pos++;
-                return new VariableExpr(name);
+                return node(interner.variable(name));
             }
             case LPAREN -> {
                 pos++;
@@ -131,6 +150,13 @@ public class Parser {
             throw new IllegalArgumentException("')' was awaited after arguments of the function " + funcName);
         }
         pos++;
-        return new FunctionCallExpr(funcName, args);
+        return node(new FunctionCallExpr(interner.functionName(funcName), interner.args(args)));
+    }
+
+    private Expr node(Expr expr){
+        if (++nodes > limits.maxNodes()){
+            throw new IllegalArgumentException("Too many nodes in expression, limit is " + limits.maxNodes());
+        }
+        return expr;
     }
 }
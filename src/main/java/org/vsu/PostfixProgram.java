@@ -0,0 +1,183 @@
+package org.vsu;
+
+import java.util.*;
+
+/**
+ * A tree flattened into postfix instructions over a value stack, used as the compiled tier
+ * of {@link TieredExpr}. Evaluation is one loop over an {@code int[]} instead of a virtual
+ * call per node, and functions dispatch on an opcode instead of on their name.
+ * <p>
+ * Instructions run in the tree's evaluation order and share its helpers, so results and
+ * exceptions are the same as for {@link Expr#eval(Map)}. Trees that would fail
+ * regardless of the variables (unknown operation or function, wrong arity) are not compiled.
+ * The value stack is a per-thread array that is reused between evaluations. It is taken out
+ * of the thread-local while a program runs, so a re-entrant evaluation on the same thread
+ * (a variable map that evaluates other formulas) gets its own array instead of sharing it.
+ */
+final class PostfixProgram {
+    private static final int NUMBER = 0, VARIABLE = 1, NEGATE = 2, ADD = 3, SUBTRACT = 4, MULTIPLY = 5,
+            DIVIDE = 6, POW = 7, INT_POW = 8, SIN = 9, COS = 10, TAN = 11, LOG = 12, SQRT = 13, ABS = 14,
+            CLAMP = 15, APPROX_SIN = 16, APPROX_COS = 17, APPROX_TAN = 18, APPROX_LOG = 19;
+
+    private static final ThreadLocal<double[]> STACK = new ThreadLocal<>();
+
+    private final int[] code;
+    private final double[] numbers;
+    private final String[] names;
+    private final int maxDepth;
+
+    private PostfixProgram(int[] code, double[] numbers, String[] names, int maxDepth){
+        this.code = code;
+        this.numbers = numbers;
+        this.names = names;
+        this.maxDepth = maxDepth;
+    }
+
+    /** Returns the program for {@code expr}, or null if the tree cannot be compiled. */
+    static PostfixProgram compile(Expr expr){
+        Compiler compiler = new Compiler();
+        if (!compiler.emit(expr)) return null;
+        int[] code = new int[compiler.code.size()];
+        for (int i = 0; i < code.length; i++){
+            code[i] = compiler.code.get(i);
+        }
+        double[] numbers = new double[compiler.numbers.size()];
+        for (int i = 0; i < numbers.length; i++){
+            numbers[i] = compiler.numbers.get(i);
+        }
+        return new PostfixProgram(code, numbers, compiler.names.toArray(new String[0]), compiler.maxDepth);
+    }
+
+    int size(){ return code.length; }
+
+    double eval(Map<String, Double> variables){
+        double[] stack = STACK.get();
+        if (stack == null || stack.length < maxDepth){
+            stack = new double[Math.max(maxDepth, 16)];
+        } else {
+            STACK.set(null);
+        }
+        try {
+            return run(variables, stack);
+        } finally {
+            STACK.set(stack);
+        }
+    }
+
+    private double run(Map<String, Double> variables, double[] stack){
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++){
+            switch (code[pc]) {
+                case NUMBER -> stack[++top] = numbers[code[++pc]];
+                case VARIABLE -> {
+                    String name = names[code[++pc]];
+                    Double value = variables.get(name);
+                    if (value == null && !variables.containsKey(name)){
+                        throw new IllegalArgumentException("Unknown variable: " + name);
+                    }
+                    stack[++top] = value;
+                }
+                case NEGATE -> stack[top] = -stack[top];
+                case ADD -> { top--; stack[top] = stack[top] + stack[top + 1]; }
+                case SUBTRACT -> { top--; stack[top] = stack[top] - stack[top + 1]; }
+                case MULTIPLY -> { top--; stack[top] = stack[top] * stack[top + 1]; }
+                case DIVIDE -> { top--; stack[top] = BinaryExpr.divide(stack[top], stack[top + 1]); }
+                case POW -> { top--; stack[top] = Math.pow(stack[top], stack[top + 1]); }
+                case INT_POW -> stack[top] = IntPowerExpr.pow(stack[top], code[++pc]);
+                case SIN -> stack[top] = Math.sin(stack[top]);
+                case COS -> stack[top] = Math.cos(stack[top]);
+                case TAN -> stack[top] = Math.tan(stack[top]);
+                case LOG -> stack[top] = FunctionCallExpr.log(stack[top], false);
+                case SQRT -> stack[top] = FunctionCallExpr.sqrt(stack[top]);
+                case ABS -> stack[top] = Math.abs(stack[top]);
+                case CLAMP -> {
+                    top -= 2;
+                    stack[top] = FunctionCallExpr.clamp(stack[top], stack[top + 1], stack[top + 2]);
+                }
+                case APPROX_SIN -> stack[top] = ApproxMath.sin(stack[top]);
+                case APPROX_COS -> stack[top] = ApproxMath.cos(stack[top]);
+                case APPROX_TAN -> stack[top] = ApproxMath.tan(stack[top]);
+                case APPROX_LOG -> stack[top] = FunctionCallExpr.log(stack[top], true);
+                default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+        return stack[0];
+    }
+
+    private static class Compiler {
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Double> numbers = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private int depth = 0;
+        private int maxDepth = 0;
+
+        boolean emit(Expr expr){
+            if (expr instanceof NumberExpr num){
+                push(NUMBER, numbers.size());
+                numbers.add(num.value());
+            } else if (expr instanceof ConstantExpr c) {
+                push(NUMBER, numbers.size());
+                numbers.add(c.constant().value);
+            } else if (expr instanceof VariableExpr v) {
+                int index = names.indexOf(v.name());
+                if (index < 0){
+                    index = names.size();
+                    names.add(v.name());
+                }
+                push(VARIABLE, index);
+            } else if (expr instanceof UnaryExpr u) {
+                if (!emit(u.operand())) return false;
+                if (u.op().equals("-")) code.add(NEGATE);
+            } else if (expr instanceof BinaryExpr b) {
+                int op = switch (b.op()) {
+                    case "+" -> ADD;
+                    case "-" -> SUBTRACT;
+                    case "*" -> MULTIPLY;
+                    case "/" -> DIVIDE;
+                    case "^" -> POW;
+                    default -> -1;
+                };
+                if (op < 0 || !emit(b.left()) || !emit(b.right())) return false;
+                code.add(op);
+                depth--;
+            } else if (expr instanceof IntPowerExpr p) {
+                if (!emit(p.base())) return false;
+                code.add(INT_POW);
+                code.add(p.exponent());
+            } else if (expr instanceof FunctionCallExpr f) {
+                return emitFunction(f);
+            } else if (expr instanceof TieredExpr t) {
+                return emit(t.tree());
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private boolean emitFunction(FunctionCallExpr f){
+            String name = f.funcName().toLowerCase();
+            if (FunctionCallExpr.arity(name) != f.args().size()) return false;
+            for (Expr arg : f.args()){
+                if (!emit(arg)) return false;
+            }
+            boolean approximate = f.approximate();
+            code.add(switch (name) {
+                case "sin" -> approximate ? APPROX_SIN : SIN;
+                case "cos" -> approximate ? APPROX_COS : COS;
+                case "tan" -> approximate ? APPROX_TAN : TAN;
+                case "log" -> approximate ? APPROX_LOG : LOG;
+                case "sqrt" -> SQRT;
+                case "abs" -> ABS;
+                default -> CLAMP;
+            });
+            depth -= f.args().size() - 1;
+            return true;
+        }
+
+        private void push(int op, int operand){
+            code.add(op);
+            code.add(operand);
+            maxDepth = Math.max(maxDepth, ++depth);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.vsu;
+
+/**
+ * Running sum, mean, min, max, argmin and argmax over evaluated rows.
+ * <p>
+ * The sum is compensated (Kahan-Babuska/Neumaier), so its error does not grow with the
+ * number of rows. NaN rows propagate into {@link #sum()} and {@link #mean()} like a plain
+ * loop would, but are skipped by the min/max family. Ties go to the lowest row.
+ * Partial results of disjoint row ranges are combined with {@link #merge}.
+ */
+public class Reduction {
+    private long count = 0;
+    private double sum = 0.0;
+    private double compensation = 0.0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long argMin = -1;
+    private long argMax = -1;
+
+    public long count(){ return count; }
+    public double min(){ return min; }
+    public double max(){ return max; }
+    /** Row of the minimum, -1 if there was no non-NaN row. */
+    public long argMin(){ return argMin; }
+    /** Row of the maximum, -1 if there was no non-NaN row. */
+    public long argMax(){ return argMax; }
+
+    public double sum(){
+        return Double.isFinite(sum) ? sum + compensation : sum;
+    }
+
+    public double mean(){
+        return count == 0 ? Double.NaN : sum() / count;
+    }
+
+    public void add(double value, long row){
+        count++;
+        addToSum(value);
+        addToExtremes(value, row);
+    }
+
+    /** Folds {@code values[0..len)}, which belong to rows {@code firstRow, firstRow + 1, ...}. */
+    public void add(double[] values, int len, long firstRow){
+        double s = sum, c = compensation;
+        for (int i = 0; i < len; i++){
+            double v = values[i];
+            double t = s + v;
+            if (Math.abs(s) >= Math.abs(v)){
+                c += (s - t) + v;
+            } else {
+                c += (v - t) + s;
+            }
+            s = t;
+        }
+        sum = s;
+        compensation = c;
+        count += len;
+        for (int i = 0; i < len; i++){
+            addToExtremes(values[i], firstRow + i);
+        }
+    }
+
+    /** Adds the partial result of a disjoint range of rows. */
+    public void merge(Reduction other){
+        count += other.count;
+        addToSum(other.sum);
+        compensation += other.compensation;
+        if (other.argMin >= 0 && (argMin < 0 || other.min < min || other.min == min && other.argMin < argMin)){
+            min = other.min;
+            argMin = other.argMin;
+        }
+        if (other.argMax >= 0 && (argMax < 0 || other.max > max || other.max == max && other.argMax < argMax)){
+            max = other.max;
+            argMax = other.argMax;
+        }
+    }
+
+    private void addToSum(double value){
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)){
+            compensation += (sum - t) + value;
+        } else {
+            compensation += (value - t) + sum;
+        }
+        sum = t;
+    }
+
+    private void addToExtremes(double value, long row){
+        if (Double.isNaN(value)) return;
+        if (argMin < 0 || value < min){
+            min = value;
+            argMin = row;
+        }
+        if (argMax < 0 || value > max){
+            max = value;
+            argMax = row;
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "Reduction(count=" + count + ", sum=" + sum() + ", min=" + min + " at " + argMin +
+                ", max=" + max + " at " + argMax + ")";
+    }
+}
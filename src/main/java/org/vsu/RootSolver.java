@@ -0,0 +1,278 @@
+package org.vsu;
+
+import java.util.*;
+
+/**
+ * Solves {@code f(x, params) = 0} for {@code x} on every row of columnar parameter data.
+ * <p>
+ * Each row needs a bracket {@code [lo, hi]} with a sign change. All rows are iterated in
+ * lockstep with safeguarded Newton steps: the slope comes from forward-mode (dual number)
+ * evaluation of the tree, and a step that leaves the bracket or shrinks too slowly falls
+ * back to bisection. Rows drop out of the working set as soon as they converge.
+ * <p>
+ * Domain errors ({@code sqrt} of a negative, {@code log} of a non-positive number, bad
+ * {@code clamp} bounds) do not throw here: the row evaluates to NaN and fails to converge.
+ * Unknown variables, unknown functions and wrong arity still throw. Calls marked
+ * {@link FunctionCallExpr#approximate()} use {@link ApproxMath}, as {@link Expr#eval} does.
+ */
+public class RootSolver {
+    public record Result(double[] roots, int[] iterations, boolean[] converged){}
+
+    private final Expr function;
+    private final String unknown;
+    private final double tolerance;
+    private final int maxIterations;
+
+    public RootSolver(Expr function, String unknown){
+        this(function, unknown, 1e-12, 100);
+    }
+
+    public RootSolver(Expr function, String unknown, double tolerance, int maxIterations){
+        if (!(tolerance > 0)) throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        if (maxIterations <= 0) throw new IllegalArgumentException("Max iterations must be positive: " + maxIterations);
+        this.function = function;
+        this.unknown = unknown;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    public Result solve(Map<String, double[]> params, double[] lo, double[] hi){
+        int rows = lo.length;
+        if (hi.length != rows){
+            throw new IllegalArgumentException("Bracket arrays differ in length: " + rows + " and " + hi.length);
+        }
+        for (String var : ExprEval.extractVariables(function)){
+            if (var.equals(unknown)) continue;
+            double[] column = params.get(var);
+            if (column == null) throw new IllegalArgumentException("Unknown variable: " + var);
+            if (column.length < rows){
+                throw new IllegalArgumentException("Column '" + var + "' has " + column.length + " rows, " +
+                        "but " + rows + " were awaited");
+            }
+        }
+
+        double[] roots = new double[rows];
+        int[] iterations = new int[rows];
+        boolean[] converged = new boolean[rows];
+
+        double[] xl = new double[rows], xh = new double[rows];
+        double[] dx = new double[rows], dxOld = new double[rows];
+        int[] active = new int[rows];
+        double[] f = new double[rows], df = new double[rows];
+        Evaluator evaluator = new Evaluator(params, rows);
+
+        for (int i = 0; i < rows; i++) active[i] = i;
+        evaluator.eval(function, lo, active, rows, f, df);
+        System.arraycopy(f, 0, xl, 0, rows);
+        evaluator.eval(function, hi, active, rows, f, df);
+
+        int n = 0;
+        for (int row = 0; row < rows; row++){
+            double fl = xl[row], fh = f[row];
+            if (fl == 0){
+                roots[row] = lo[row];
+                converged[row] = true;
+            } else if (fh == 0) {
+                roots[row] = hi[row];
+                converged[row] = true;
+            } else if (!(fl < 0 && fh > 0 || fl > 0 && fh < 0)) {
+                roots[row] = Double.NaN;
+            } else {
+                xl[row] = fl < 0 ? lo[row] : hi[row];
+                xh[row] = fl < 0 ? hi[row] : lo[row];
+                roots[row] = 0.5 * (lo[row] + hi[row]);
+                dxOld[row] = Math.abs(hi[row] - lo[row]);
+                dx[row] = dxOld[row];
+                active[n++] = row;
+            }
+        }
+
+        for (int iter = 1; iter <= maxIterations && n > 0; iter++){
+            evaluator.eval(function, roots, active, n, f, df);
+            int remaining = 0;
+            for (int i = 0; i < n; i++){
+                int row = active[i];
+                double x = roots[row], fx = f[i], dfx = df[i];
+                iterations[row] = iter;
+                if (fx == 0){
+                    converged[row] = true;
+                    continue;
+                }
+                if (Double.isNaN(fx)){
+                    roots[row] = Double.NaN;
+                    continue;
+                }
+                if (fx < 0) xl[row] = x; else xh[row] = x;
+
+                double lower = Math.min(xl[row], xh[row]), upper = Math.max(xl[row], xh[row]);
+                double newton = x - fx / dfx;
+                if (!(newton >= lower && newton <= upper) || Math.abs(2 * fx) > Math.abs(dxOld[row] * dfx)){
+                    dxOld[row] = dx[row];
+                    dx[row] = 0.5 * (xh[row] - xl[row]);
+                    x = xl[row] + dx[row];
+                } else {
+                    dxOld[row] = dx[row];
+                    dx[row] = fx / dfx;
+                    x = newton;
+                }
+                roots[row] = x;
+
+                if (Math.abs(dx[row]) <= tolerance * Math.max(1.0, Math.abs(x))){
+                    converged[row] = true;
+                } else {
+                    active[remaining++] = row;
+                }
+            }
+            n = remaining;
+        }
+        return new Result(roots, iterations, converged);
+    }
+
+    /**
+     * Forward-mode evaluation of value and d/d(unknown) for a subset of rows. Intermediate
+     * results go to a pool of row-sized scratch arrays that is reused across iterations.
+     */
+    private class Evaluator {
+        private final Map<String, double[]> params;
+        private final int capacity;
+        private final List<double[]> scratch = new ArrayList<>();
+        private int scratchTop = 0;
+
+        Evaluator(Map<String, double[]> params, int capacity){
+            this.params = params;
+            this.capacity = capacity;
+        }
+
+        private double[] acquire(){
+            if (scratchTop == scratch.size()) scratch.add(new double[capacity]);
+            return scratch.get(scratchTop++);
+        }
+
+        private void release(int count){
+            scratchTop -= count;
+        }
+
+        void eval(Expr expr, double[] x, int[] rows, int n, double[] val, double[] der){
+            if (expr instanceof NumberExpr num){
+                Arrays.fill(val, 0, n, num.value());
+                Arrays.fill(der, 0, n, 0.0);
+            } else if (expr instanceof ConstantExpr c) {
+                Arrays.fill(val, 0, n, c.constant().value);
+                Arrays.fill(der, 0, n, 0.0);
+            } else if (expr instanceof VariableExpr v) {
+                boolean isUnknown = v.name().equals(unknown);
+                double[] column = isUnknown ? x : params.get(v.name());
+                for (int i = 0; i < n; i++) val[i] = column[rows[i]];
+                Arrays.fill(der, 0, n, isUnknown ? 1.0 : 0.0);
+            } else if (expr instanceof UnaryExpr u) {
+                eval(u.operand(), x, rows, n, val, der);
+                if (u.op().equals("-")){
+                    for (int i = 0; i < n; i++){
+                        val[i] = -val[i];
+                        der[i] = -der[i];
+                    }
+                }
+            } else if (expr instanceof BinaryExpr b) {
+                double[] rv = acquire(), rd = acquire();
+                eval(b.left(), x, rows, n, val, der);
+                eval(b.right(), x, rows, n, rv, rd);
+                for (int i = 0; i < n; i++){
+                    binary(b.op(), val, der, rv[i], rd[i], i);
+                }
+                release(2);
+            } else if (expr instanceof IntPowerExpr p) {
+                eval(p.base(), x, rows, n, val, der);
+                int k = p.exponent();
+                for (int i = 0; i < n; i++){
+                    double base = val[i];
+                    val[i] = IntPowerExpr.pow(base, k);
+                    der[i] = k == 0 ? 0.0 : k * IntPowerExpr.pow(base, k - 1) * der[i];
+                }
+            } else if (expr instanceof FunctionCallExpr fc) {
+                function(fc, x, rows, n, val, der);
+            } else if (expr instanceof TieredExpr t) {
+                eval(t.tree(), x, rows, n, val, der);
+            } else {
+                throw new IllegalArgumentException("Unsupported expression: " + expr);
+            }
+        }
+
+        private void binary(String op, double[] val, double[] der, double r, double dr, int i){
+            double l = val[i], dl = der[i];
+            double value = BinaryExpr.apply(op, l, r);
+            der[i] = switch (op) {
+                case "+" -> dl + dr;
+                case "-" -> dl - dr;
+                case "*" -> dl * r + l * dr;
+                case "/" -> (dl * r - l * dr) / (r * r);
+                default -> {
+                    double d = 0.0;
+                    if (dl != 0) d += r * Math.pow(l, r - 1) * dl;
+                    if (dr != 0) d += value * Math.log(l) * dr;
+                    yield d;
+                }
+            };
+            val[i] = value;
+        }
+
+        private void function(FunctionCallExpr fc, double[] x, int[] rows, int n, double[] val, double[] der){
+            String name = fc.funcName().toLowerCase();
+            List<Expr> args = fc.args();
+            FunctionCallExpr.checkArity(fc.funcName(), args.size());
+
+            eval(args.getFirst(), x, rows, n, val, der);
+            if (name.equals("clamp")){
+                double[] lo = acquire(), dlo = acquire(), hi = acquire(), dhi = acquire();
+                eval(args.get(1), x, rows, n, lo, dlo);
+                eval(args.get(2), x, rows, n, hi, dhi);
+                for (int i = 0; i < n; i++){
+                    if (lo[i] > hi[i]){
+                        val[i] = Double.NaN;
+                        der[i] = Double.NaN;
+                    } else if (val[i] < lo[i]) {
+                        val[i] = lo[i];
+                        der[i] = dlo[i];
+                    } else if (val[i] > hi[i]) {
+                        val[i] = hi[i];
+                        der[i] = dhi[i];
+                    }
+                }
+                release(4);
+                return;
+            }
+
+            boolean approximate = fc.approximate();
+            for (int i = 0; i < n; i++){
+                double a = val[i], da = der[i];
+                switch (name) {
+                    case "sin" -> {
+                        val[i] = FunctionCallExpr.sin(a, approximate);
+                        der[i] = FunctionCallExpr.cos(a, approximate) * da;
+                    }
+                    case "cos" -> {
+                        val[i] = FunctionCallExpr.cos(a, approximate);
+                        der[i] = -FunctionCallExpr.sin(a, approximate) * da;
+                    }
+                    case "tan" -> {
+                        double c = FunctionCallExpr.cos(a, approximate);
+                        val[i] = FunctionCallExpr.tan(a, approximate);
+                        der[i] = da / (c * c);
+                    }
+                    case "sqrt" -> {
+                        double s = a < 0 ? Double.NaN : Math.sqrt(a);
+                        val[i] = s;
+                        der[i] = da / (2 * s);
+                    }
+                    case "log" -> {
+                        val[i] = a <= 0 ? Double.NaN : FunctionCallExpr.log(a, approximate);
+                        der[i] = da / a;
+                    }
+                    default -> {
+                        val[i] = Math.abs(a);
+                        der[i] = a == 0 ? 0.0 : Math.signum(a) * da;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.vsu;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a tree so that only expressions that turn out to be hot pay for compilation.
+ * <p>
+ * Interpreted evaluations are counted; once {@code threshold} of them happen between two
+ * {@link #sweep()}s, the tree is compiled to a {@link PostfixProgram} on the given executor
+ * and swapped in through a volatile field, so concurrent callers see either the tree or the
+ * finished program. Compiled evaluations are not counted, they only mark the wrapper as used;
+ * a sweep that finds the program unused since the previous sweep drops it again (the
+ * expression went cold) and counting starts over.
+ * <p>
+ * Wrappers made with {@link #TieredExpr(Expr)} compile on a shared daemon thread that also
+ * sweeps all of them every {@link #SWEEP_PERIOD_SECONDS}; it holds them weakly, so unused
+ * wrappers are still collected. With an explicit executor the owner calls {@link #sweep()}.
+ * Results and exceptions are those of the tree. The non-throwing
+ * {@link #eval(Map, EvalStatus)} always uses the tree, so failures point at tree nodes.
+ */
+public final class TieredExpr implements Expr {
+    public static final int DEFAULT_THRESHOLD = 10_000;
+    public static final long SWEEP_PERIOD_SECONDS = 10;
+
+    private final Expr tree;
+    private final int threshold;
+    private final Executor compiler;
+    private final boolean background;
+    private final AtomicBoolean compiling = new AtomicBoolean();
+    private final AtomicLong evaluations = new AtomicLong();
+    private volatile PostfixProgram compiled;
+    private volatile boolean compilable = true;
+    private volatile boolean used = false;
+
+    public TieredExpr(Expr tree){
+        this(tree, DEFAULT_THRESHOLD, Background.EXECUTOR, true);
+    }
+
+    public TieredExpr(Expr tree, int threshold, Executor compiler){
+        this(tree, threshold, compiler, false);
+    }
+
+    private TieredExpr(Expr tree, int threshold, Executor compiler, boolean background){
+        if (threshold <= 0) throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        this.tree = tree instanceof TieredExpr t ? t.tree : tree;
+        this.threshold = threshold;
+        this.compiler = compiler;
+        this.background = background;
+        if (background) Background.register(this);
+    }
+
+    public Expr tree(){ return tree; }
+    public boolean isCompiled(){ return compiled != null; }
+
+    @Override
+    public double eval(Map<String, Double> variables){
+        PostfixProgram program = compiled;
+        if (program != null){
+            if (!used) used = true;
+            return program.eval(variables);
+        }
+        if (evaluations.incrementAndGet() >= threshold) promote();
+        return tree.eval(variables);
+    }
+
+    @Override
+    public double eval(Map<String, Double> variables, EvalStatus status){
+        return tree.eval(variables, status);
+    }
+
+    /**
+     * Restarts the count of interpreted evaluations and drops the compiled form if it was not
+     * used since the previous sweep. Returns true if the compiled form was dropped.
+     */
+    public boolean sweep(){
+        evaluations.set(0);
+        if (compiled == null) return false;
+        if (used){
+            used = false;
+            return false;
+        }
+        compiled = null;
+        return true;
+    }
+
+    private void promote(){
+        if (!compilable || !compiling.compareAndSet(false, true)) return;
+        try {
+            compiler.execute(() -> {
+                try {
+                    PostfixProgram program = PostfixProgram.compile(tree);
+                    if (program == null){
+                        compilable = false;
+                        return;
+                    }
+                    used = true;
+                    compiled = program;
+                } finally {
+                    compiling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e){
+            compiling.set(false);
+        }
+    }
+
+    @Override
+    public String toString(){
+        return tree.toString();
+    }
+
+    /** Shared compiler thread of the default wrappers, started on first use. */
+    private static class Background {
+        private static final Set<TieredExpr> WRAPPERS = Collections.newSetFromMap(new WeakHashMap<>());
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "expr-tiered-compiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            EXECUTOR.scheduleWithFixedDelay(Background::sweepAll, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS,
+                    TimeUnit.SECONDS);
+        }
+
+        static void register(TieredExpr expr){
+            synchronized (WRAPPERS){
+                WRAPPERS.add(expr);
+            }
+        }
+
+        private static void sweepAll(){
+            List<TieredExpr> wrappers;
+            synchronized (WRAPPERS){
+                wrappers = new ArrayList<>(WRAPPERS);
+            }
+            for (TieredExpr expr : wrappers){
+                expr.sweep();
+            }
+        }
+    }
+}
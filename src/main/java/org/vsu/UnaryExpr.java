@@ -9,6 +9,7 @@ public class UnaryExpr implements Expr{
         this.operand = operand;
     }
 
+    public String op(){ return op; }
     public Expr operand(){ return  operand; }
 
     @Override
@@ -17,6 +18,12 @@ public class UnaryExpr implements Expr{
         return op.equals("-") ? -val : val;
     }
 
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        double val = operand.eval(variables, status);
+        return op.equals("-") ? -val : val;
+    }
+
     @Override
     public String toString(){
         return "(" + op + operand + ")";
@@ -7,6 +7,8 @@ public class VariableExpr implements Expr{
         this.name = name;
     }
 
+    public String name(){ return name; }
+
     @Override
     public double eval(java.util.Map<String, Double> variables){
         if (!variables.containsKey(name)){
@@ -15,6 +17,14 @@ public class VariableExpr implements Expr{
         return variables.get(name);
     }
 
+    @Override
+    public double eval(java.util.Map<String, Double> variables, EvalStatus status){
+        if (!variables.containsKey(name)){
+            return status.fail(EvalStatus.Code.UNKNOWN_VARIABLE, this);
+        }
+        return variables.get(name);
+    }
+
     @Override
     public String toString(){
         return name;
@@ -0,0 +1,217 @@
+package org.vsu;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.util.*;
+
+/**
+ * Timing harness for the evaluation paths, run with {@code gradle benchmark -Pbench=<names>}
+ * (comma separated, all when omitted).
+ * <p>
+ * Every case runs in a fresh JVM, so profiles collected for one variant do not slow down the
+ * next one (the shared {@code eval} methods would otherwise be compiled for both). In the
+ * child, a case is warmed up and then timed {@link #ROUNDS} times over {@link #ROWS}
+ * evaluations; the best round is reported, in nanoseconds per evaluation. The heap case
+ * reports the heap retained by a parsed catalog after a full GC, in bytes per formula.
+ */
+public class ExprBenchmarks {
+    static final int ROUNDS = 10;
+    static final int ROWS = 1 << 16;
+    static final int CATALOG = 50_000;
+    private static final String CHILD = "--child";
+
+    private static volatile double sink;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals(CHILD)){
+            System.out.println(measure(args[1], args[2], args[3]));
+            return;
+        }
+        List<String> names = args.length == 0 ? List.of("optimizer", "approx", "heap") : List.of(args);
+        System.out.println("java " + System.getProperty("java.version") + ", " + System.getProperty("java.vm.name") +
+                ", " + Runtime.getRuntime().availableProcessors() + " cpus");
+        for (String name : names){
+            switch (name) {
+                case "optimizer" -> optimizer();
+                case "approx" -> approx();
+                case "heap" -> heap();
+                default -> throw new IllegalArgumentException("Unknown benchmark: " + name);
+            }
+        }
+    }
+
+    /** Tree as parsed against {@link ExprOptimizer#optimize} (integer powers, Horner form). */
+    static void optimizer() throws IOException, InterruptedException {
+        String[] formulas = {
+                "x ^ 2", "x ^ 3", "x ^ 7",
+                "a * x ^ 4 + b * x ^ 3 + c * x ^ 2 + d * x + e",
+                "3 * x ^ 8 - 2 * x ^ 5 + x ^ 3 / 7 - 11"
+        };
+        for (String formula : formulas){
+            report(formula, "ns", "tree", fork("scalar", formula, "tree"), "optimized",
+                    fork("scalar", formula, "optimized"));
+        }
+    }
+
+    /** Exact functions against {@link ApproxMath}, scalar and batch. */
+    static void approx() throws IOException, InterruptedException {
+        String[] formulas = {"sin(x)", "cos(x)", "tan(x)", "log(x)", "sin(x) * cos(x) + log(x) * tan(x)"};
+        for (String formula : formulas){
+            for (String kind : List.of("scalar", "batch")){
+                report(formula + " " + kind, "ns", "exact", fork(kind, formula, "tree"), "approx",
+                        fork(kind, formula, "approx"));
+            }
+        }
+    }
+
+    /**
+     * Heap retained by {@link #CATALOG} generated formulas, as the parser built them before
+     * interning (every leaf, name and argument list its own object) against parsing each
+     * formula with its own interner (the default) and one interner for the whole catalog.
+     */
+    static void heap() throws IOException, InterruptedException {
+        double before = fork("heap", "", "before");
+        report(CATALOG + " formulas, default parse", "B", "before", before, "after", fork("heap", "", "default"));
+        report(CATALOG + " formulas, catalog interner", "B", "before", before, "after", fork("heap", "", "catalog"));
+    }
+
+    private static double fork(String kind, String formula, String variant) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ExprBenchmarks.class.getName(), CHILD, kind, formula, variant)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes()).trim();
+        if (process.waitFor() != 0) throw new IllegalStateException("Benchmark failed: " + formula + " " + variant);
+        return Double.parseDouble(output);
+    }
+
+    static double measure(String kind, String formula, String variant){
+        if (kind.equals("heap")) return heap(variant);
+        Expr tree = ExprEval.parse(formula);
+        Expr expr = switch (variant) {
+            case "tree" -> tree;
+            case "optimized" -> ExprOptimizer.optimize(tree);
+            case "approx" -> ApproxMath.rewrite(tree, EnumSet.allOf(ApproxMath.Function.class));
+            default -> throw new IllegalArgumentException("Unknown variant: " + variant);
+        };
+        return switch (kind) {
+            case "scalar" -> scalar(expr);
+            case "batch" -> batch(expr);
+            default -> throw new IllegalArgumentException("Unknown kind: " + kind);
+        };
+    }
+
+    /** Scalar {@link Expr#eval(Map)} with {@code x} sweeping {@code [0.5, 1.5)}. */
+    static double scalar(Expr expr){
+        Map<String, Double> vars = new HashMap<>(Map.of("a", 1.5, "b", -2.0, "c", 0.25, "d", 3.0));
+        return time(() -> {
+            double acc = 0;
+            for (int i = 0; i < ROWS; i++){
+                vars.put("x", 0.5 + (double) i / ROWS);
+                acc += expr.eval(vars);
+            }
+            return acc;
+        });
+    }
+
+    /** {@link BatchEvaluator} over {@link #ROWS} rows of {@code x} in {@code [0.5, 1.5)}. */
+    static double batch(Expr expr){
+        double[] x = new double[ROWS], out = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) x[i] = 0.5 + (double) i / ROWS;
+        Map<String, double[]> columns = Map.of("x", x);
+        BatchEvaluator evaluator = new BatchEvaluator(expr);
+        return time(() -> {
+            evaluator.evaluate(columns, out);
+            return out[ROWS - 1];
+        });
+    }
+
+    /** Bytes per formula retained by a parsed catalog. */
+    static double heap(String variant){
+        List<String> sources = catalog(new Random(42));
+        long before = usedAfterGc();
+        ExprInterner interner = variant.equals("catalog") ? new ExprInterner() : null;
+        List<Expr> parsed = new ArrayList<>(CATALOG);
+        for (String source : sources){
+            if (interner != null){
+                parsed.add(ExprEval.parse(source, ParseLimits.UNLIMITED, interner));
+            } else if (variant.equals("before")) {
+                parsed.add(unshared(ExprEval.parse(source)));
+            } else {
+                parsed.add(ExprEval.parse(source));
+            }
+        }
+        interner = null;
+        long after = usedAfterGc();
+        Reference.reachabilityFence(parsed);
+        Reference.reachabilityFence(sources);
+        return (double) (after - before) / CATALOG;
+    }
+
+    /** Copy with a fresh object for every leaf, name and argument list, as parsed before interning. */
+    private static Expr unshared(Expr expr){
+        if (expr instanceof NumberExpr n){
+            return new NumberExpr(n.value());
+        } else if (expr instanceof ConstantExpr c) {
+            return new ConstantExpr(c.constant());
+        } else if (expr instanceof VariableExpr v) {
+            return new VariableExpr(new String(v.name()));
+        } else if (expr instanceof BinaryExpr b) {
+            return new BinaryExpr(b.op(), unshared(b.left()), unshared(b.right()));
+        } else if (expr instanceof UnaryExpr u) {
+            return new UnaryExpr(u.op(), unshared(u.operand()));
+        } else if (expr instanceof FunctionCallExpr f) {
+            List<Expr> args = new ArrayList<>();
+            for (Expr arg : f.args()){
+                args.add(unshared(arg));
+            }
+            return new FunctionCallExpr(new String(f.funcName()), args);
+        }
+        throw new IllegalArgumentException("Unsupported expression: " + expr);
+    }
+
+    /** Formulas over 500 variables, mostly small integers and a pool of decimal literals. */
+    static List<String> catalog(Random random){
+        List<String> sources = new ArrayList<>(CATALOG);
+        for (int i = 0; i < CATALOG; i++){
+            sources.add(formula(random, 4));
+        }
+        return sources;
+    }
+
+    private static String formula(Random random, int depth){
+        int pick = random.nextInt(depth == 0 ? 3 : 10);
+        return switch (pick) {
+            case 0 -> "sensor" + random.nextInt(500);
+            case 1 -> String.valueOf(random.nextInt(100));
+            case 2 -> random.nextInt(5) == 0 ? String.valueOf(random.nextDouble()) : "0." + (1 + random.nextInt(200));
+            case 3 -> "sin(" + formula(random, depth - 1) + ")";
+            case 4 -> "clamp(" + formula(random, depth - 1) + ", 0, " + random.nextInt(1000) + ")";
+            default -> "(" + formula(random, depth - 1) + " " + "+-*/".charAt(random.nextInt(4)) + " "
+                    + formula(random, depth - 1) + ")";
+        };
+    }
+
+    private static long usedAfterGc(){
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static double time(java.util.function.DoubleSupplier round){
+        for (int i = 0; i < 20; i++) sink = round.getAsDouble();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++){
+            long start = System.nanoTime();
+            sink = round.getAsDouble();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / ROWS;
+    }
+
+    static void report(String name, String unit, String baselineLabel, double baseline, String label, double value){
+        System.out.printf("%-50s %s %8.1f %s  %s %8.1f %s  x%.2f%n", name, baselineLabel, baseline, unit, label, value,
+                unit, baseline / value);
+    }
+}
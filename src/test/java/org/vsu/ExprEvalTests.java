@@ -2,7 +2,14 @@ package org.vsu;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -263,6 +270,588 @@ public class ExprEvalTests {
         assertTrue(vars.isEmpty());
     }
 
+    // ─── 10. OPTIMIZER ──────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("Optimizer: small integer powers become multiplication chains")
+    void testIntegerPowerStrengthReduction() {
+        Expr opt = ExprOptimizer.optimize(ExprEval.parse("x^3 + sin(y)^2"));
+        assertEquals("((x ^ 3) + (sin(y) ^ 2))", opt.toString());
+        assertEquals(8.0 + Math.pow(Math.sin(0.5), 2), opt.eval(Map.of("x", 2.0, "y", 0.5)), 1e-12);
+
+        // Fractional, negative and large exponents keep Math.pow
+        assertInstanceOf(BinaryExpr.class, ExprOptimizer.optimize(ExprEval.parse("x^0.5")));
+        assertInstanceOf(BinaryExpr.class, ExprOptimizer.optimize(ExprEval.parse("x^-2")));
+        assertInstanceOf(BinaryExpr.class, ExprOptimizer.optimize(ExprEval.parse("x^100")));
+        assertInstanceOf(IntPowerExpr.class, ExprOptimizer.optimize(ExprEval.parse("(x+1)^16")));
+    }
+
+    @Test
+    @DisplayName("IntPowerExpr: within n ulps of Math.pow")
+    void testIntegerPowerUlpBound() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double x = (random.nextDouble() - 0.5) * Math.pow(2, random.nextInt(40) - 20);
+            int n = random.nextInt(ExprOptimizer.MAX_EXPONENT + 1);
+            double expected = Math.pow(x, n);
+            double actual = IntPowerExpr.pow(x, n);
+            if (expected != 0 && Math.abs(expected) >= Double.MIN_NORMAL) {
+                assertTrue(Math.abs(actual - expected) <= Math.max(n, 1) * Math.ulp(expected),
+                        "x=" + x + ", n=" + n);
+            }
+        }
+        assertEquals(1.0, IntPowerExpr.pow(Double.NaN, 0), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, IntPowerExpr.pow(1e300, 2), 0.0);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(IntPowerExpr.pow(-0.0, 3)));
+    }
+
+    @Test
+    @DisplayName("Optimizer: polynomials in one variable are rewritten in Horner form")
+    void testHornerRewrite() {
+        Expr ast = ExprEval.parse("a*x^4 + b*x^3 + c*x^2 + d*x + e1");
+        Expr opt = ExprOptimizer.optimize(ast);
+        assertEquals("((((((((a * x) + b) * x) + c) * x) + d) * x) + e1)", opt.toString());
+
+        Map<String, Double> ctx = Map.of("a", 1.5, "b", -2.0, "c", 0.25, "d", 3.0, "e1", -7.0, "x", 1.75);
+        assertEquals(ast.eval(ctx), opt.eval(ctx), 1e-12);
+
+        // Gaps in degrees, subtraction, division by a constant and unordered terms
+        ast = ExprEval.parse("7 - x^2 + 3*x^5/2");
+        opt = ExprOptimizer.optimize(ast);
+        assertEquals("(((((3 / 2) * (x ^ 3)) - 1) * (x ^ 2)) + 7)", opt.toString());
+        for (double x = -3; x <= 3; x += 0.125) {
+            double expected = ast.eval(Map.of("x", x));
+            assertEquals(expected, opt.eval(Map.of("x", x)), 1e-12 * Math.max(1, Math.abs(expected)));
+        }
+
+        // Not a polynomial in a single variable: only the powers are reduced
+        opt = ExprOptimizer.optimize(ExprEval.parse("x^2 + sin(x)"));
+        assertEquals("((x ^ 2) + sin(x))", opt.toString());
+        assertEquals(Set.of("x"), ExprEval.extractVariables(opt));
+    }
+
+    // ─── 11. ROOT SOLVER ────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("RootSolver: Newton/bisection over many rows in lockstep")
+    void testRootSolver() {
+        int rows = 1000;
+        double[] a = new double[rows], lo = new double[rows], hi = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            a[i] = 0.01 + i * 0.37;
+            hi[i] = Math.max(1.0, a[i]);
+        }
+        RootSolver solver = new RootSolver(ExprEval.parse("x^2 - a"), "x");
+        RootSolver.Result result = solver.solve(Map.of("a", a), lo, hi);
+        for (int i = 0; i < rows; i++) {
+            assertTrue(result.converged()[i]);
+            assertEquals(Math.sqrt(a[i]), result.roots()[i], 1e-10 * Math.max(1, Math.sqrt(a[i])));
+            assertTrue(result.iterations()[i] <= 12, "row " + i + ": " + result.iterations()[i]);
+        }
+
+        // Transcendental function with a clamp and a parameter in front of x
+        solver = new RootSolver(ExprEval.parse("cos(x) - k * clamp(x, 0, 10)"), "x");
+        result = solver.solve(Map.of("k", new double[]{1.0, 2.0}), new double[]{0, 0}, new double[]{2, 2});
+        assertEquals(0.7390851332151607, result.roots()[0], 1e-12);
+        double x1 = result.roots()[1];
+        assertEquals(Math.cos(x1), 2 * x1, 1e-12);
+    }
+
+    @Test
+    @DisplayName("RootSolver: rows without a sign change or with domain errors do not converge")
+    void testRootSolverFailures() {
+        RootSolver solver = new RootSolver(ExprEval.parse("log(x) + c"), "x");
+        RootSolver.Result result = solver.solve(Map.of("c", new double[]{0.0, 5.0, 0.0}),
+                new double[]{0.5, 0.5, -1.0}, new double[]{4.0, 4.0, 4.0});
+        assertTrue(result.converged()[0]);
+        assertEquals(1.0, result.roots()[0], 1e-12);
+        assertFalse(result.converged()[1]);
+        assertTrue(Double.isNaN(result.roots()[1]));
+        assertFalse(result.converged()[2]);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> solver.solve(Map.of(), new double[]{1}, new double[]{2}));
+    }
+
+    // ─── 12. BATCH EVALUATION ───────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("BatchEvaluator: same results as eval over heap and direct buffers")
+    void testBatchEvaluator() {
+        Expr ast = ExprEval.parse("clamp(x, -1, 1) * sin(y) + x^3 / (y - 2) - sqrt(abs(x)) + log(1 + y^2) + pi");
+        int rows = 3 * BatchEvaluator.CHUNK + 17;
+        double[] x = new double[rows], y = new double[rows], out = new double[rows];
+        Random random = new Random(7);
+        for (int i = 0; i < rows; i++) {
+            x[i] = random.nextGaussian() * 3;
+            y[i] = i % 5 == 0 ? 2.0 : random.nextGaussian();
+        }
+        new BatchEvaluator(ast).evaluate(Map.of("x", x, "y", y), out);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(ast.eval(Map.of("x", x[i], "y", y[i])), out[i], 0.0);
+        }
+
+        DoubleBuffer xs = ByteBuffer.allocateDirect(rows * Double.BYTES).asDoubleBuffer().put(x).flip();
+        DoubleBuffer ys = ByteBuffer.allocateDirect(rows * Double.BYTES).asDoubleBuffer().put(y).flip();
+        DoubleBuffer direct = ByteBuffer.allocateDirect(rows * Double.BYTES).asDoubleBuffer();
+        new BatchEvaluator(ast).evaluate(Map.of("x", xs, "y", ys), direct);
+        assertEquals(0, xs.position());
+        for (int i = 0; i < rows; i++) {
+            assertEquals(out[i], direct.get(i), 0.0);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchEvaluator(ast).evaluate(Map.of("x", x), out));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchEvaluator(ExprEval.parse("sqrt(x)")).evaluate(Map.of("x", x), out));
+    }
+
+    @Test
+    @DisplayName("BatchEvaluator: memory-mapped column files")
+    void testBatchEvaluatorFiles(@TempDir Path dir) throws IOException {
+        int rows = 5000;
+        ByteBuffer a = ByteBuffer.allocate(rows * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < rows; i++) a.putDouble(i * 0.5);
+        Files.write(dir.resolve("a.bin"), a.array());
+
+        Path out = dir.resolve("out.bin");
+        BatchEvaluator.evaluateFiles(ExprEval.parse("a * 2 + 1"), Map.of("a", dir.resolve("a.bin")),
+                out, ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(out)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(rows * Double.BYTES, result.remaining());
+        for (int i = 0; i < rows; i++) {
+            assertEquals(i + 1.0, result.getDouble(), 0.0);
+        }
+
+        // Bad inputs are rejected before the existing output is truncated
+        assertThrows(IllegalArgumentException.class, () -> BatchEvaluator.evaluateFiles(ExprEval.parse("a + b"),
+                Map.of("a", dir.resolve("a.bin")), out, ByteOrder.LITTLE_ENDIAN));
+        assertEquals(rows * Double.BYTES, Files.size(out));
+    }
+
+    // ─── 13. NON-THROWING EVALUATION ────────────────────────────────────────────
+
+    @Test
+    @DisplayName("EvalStatus: failures evaluate to NaN and name the failing node")
+    void testNonThrowingEval() {
+        EvalStatus status = new EvalStatus();
+        assertEquals(3.0, ExprEval.evaluate(ExprEval.parse("sqrt(9)"), Map.of(), status), 0.0);
+        assertTrue(status.ok());
+
+        Expr ast = ExprEval.parse("1 + sqrt(x) * log(y)");
+        assertTrue(Double.isNaN(ExprEval.evaluate(ast, Map.of("x", -4.0, "y", 0.0), status)));
+        assertEquals(EvalStatus.Code.NEGATIVE_SQRT, status.code());
+        assertEquals("sqrt(x)", status.node().toString());
+
+        status.reset();
+        assertTrue(Double.isNaN(ExprEval.evaluate(ast, Map.of("x", 4.0), status)));
+        assertEquals(EvalStatus.Code.UNKNOWN_VARIABLE, status.code());
+        assertEquals("y", status.node().toString());
+
+        String[][] cases = {
+                {"log(0)", "NON_POSITIVE_LOG"}, {"clamp(1, 2, 0)", "CLAMP_BOUNDS"},
+                {"clamp(1, 2)", "WRONG_ARITY"}, {"foo(1)", "UNKNOWN_FUNCTION"}
+        };
+        for (String[] c : cases) {
+            status.reset();
+            assertTrue(Double.isNaN(ExprEval.parse(c[0]).eval(Map.of(), status)));
+            assertEquals(EvalStatus.Code.valueOf(c[1]), status.code(), c[0]);
+            // The default mode still throws
+            assertThrows(IllegalArgumentException.class, () -> parseEval(c[0]));
+        }
+
+        // Expr implementations that only define eval(Map) get a default non-throwing eval
+        Expr custom = vars -> {
+            if (!vars.containsKey("k")) throw new IllegalArgumentException("k is required");
+            return vars.get("k") * 2;
+        };
+        status.reset();
+        assertEquals(6.0, custom.eval(Map.of("k", 3.0), status), 0.0);
+        assertTrue(status.ok());
+        Expr sum = new BinaryExpr("+", new NumberExpr(1), custom);
+        assertTrue(Double.isNaN(sum.eval(Map.of(), status)));
+        assertEquals(EvalStatus.Code.EVALUATION_ERROR, status.code());
+        assertSame(custom, status.node());
+    }
+
+    @Test
+    @DisplayName("BatchStatus: per-row status codes for batch evaluation")
+    void testNonThrowingBatch() {
+        Expr ast = ExprEval.parse("sqrt(x) + clamp(1, 0, y)");
+        int rows = BatchEvaluator.CHUNK + 10;
+        double[] x = new double[rows], y = new double[rows], out = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = i % 3 == 0 ? -1 : i;
+            y[i] = i % 7 == 0 ? -1 : 5;
+        }
+        BatchStatus status = new BatchStatus(16);
+        BatchEvaluator evaluator = new BatchEvaluator(ast);
+        evaluator.evaluate(Map.of("x", x, "y", y), out, status);
+
+        int failures = 0;
+        for (int i = 0; i < rows; i++) {
+            EvalStatus single = new EvalStatus();
+            double expected = ast.eval(Map.of("x", x[i], "y", y[i]), single);
+            assertEquals(expected, out[i], 0.0);
+            assertEquals(single.code(), status.code(i));
+            assertSame(single.node(), status.node(i));
+            if (!single.ok()) failures++;
+        }
+        assertEquals(failures, status.failures());
+        assertEquals(EvalStatus.Code.NEGATIVE_SQRT, status.code(21));
+        assertEquals(EvalStatus.Code.CLAMP_BOUNDS, status.code(7));
+
+        evaluator.evaluate(Map.of("y", y), out, status);
+        assertEquals(rows, status.failures());
+        assertEquals(EvalStatus.Code.UNKNOWN_VARIABLE, status.code(1));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(Map.of("x", x, "y", y), out));
+
+        // Arguments are evaluated before the call is rejected, as in the scalar path
+        double[] negative = new double[rows];
+        Arrays.fill(negative, -1);
+        for (String formula : new String[]{"foo(z)", "clamp(sqrt(x), 2)"}) {
+            Expr call = ExprEval.parse(formula);
+            new BatchEvaluator(call).evaluate(Map.of("x", negative), out, status);
+            EvalStatus single = new EvalStatus();
+            call.eval(Map.of("x", -1.0), single);
+            assertEquals(rows, status.failures());
+            assertEquals(single.code(), status.code(5), formula);
+            assertSame(single.node(), status.node(5), formula);
+        }
+        assertEquals(EvalStatus.Code.NEGATIVE_SQRT, status.code(0));
+        Exception e = assertThrows(IllegalArgumentException.class,
+                () -> new BatchEvaluator(ExprEval.parse("clamp(sqrt(x), 2)")).evaluate(Map.of("x", negative), out));
+        assertTrue(e.getMessage().contains("negative"));
+    }
+
+    // ─── 14. APPROXIMATE MATH ───────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("ApproxMath: documented relative error bounds against Math")
+    void testApproxMathAccuracy() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000; i++) {
+            double x = switch (i % 3) {
+                case 0 -> (random.nextDouble() * 2 - 1) * ApproxMath.REDUCTION_LIMIT;
+                case 1 -> (random.nextDouble() * 2 - 1) * 10;
+                default -> random.nextInt(100_000) * Math.PI / 2 + (random.nextDouble() - 0.5) * 1e-9;
+            };
+            assertRelative(Math.sin(x), ApproxMath.sin(x), 1e-9);
+            assertRelative(Math.cos(x), ApproxMath.cos(x), 1e-9);
+            assertRelative(Math.tan(x), ApproxMath.tan(x), 3e-9);
+
+            double y = switch (i % 3) {
+                case 0 -> Math.scalb(random.nextDouble() + 0.5, random.nextInt(2000) - 1000);
+                case 1 -> random.nextDouble() * 4;
+                default -> 1 + (random.nextDouble() - 0.5) * 1e-3;
+            };
+            assertRelative(Math.log(y), ApproxMath.log(y), 1e-11);
+        }
+
+        assertEquals(0.0, ApproxMath.log(1.0), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, ApproxMath.log(0.0), 0.0);
+        assertTrue(Double.isNaN(ApproxMath.sin(Double.NaN)));
+        assertTrue(Double.isNaN(ApproxMath.cos(Double.POSITIVE_INFINITY)));
+        assertEquals(Math.sin(1e12), ApproxMath.sin(1e12), 0.0);
+    }
+
+    @Test
+    @DisplayName("ApproxMath: per-function opt-in for scalar and batch evaluation")
+    void testApproxMathRewrite() {
+        Expr exact = ExprEval.parse("sin(x) + cos(x) + log(x) + sqrt(x)");
+        Expr approx = ApproxMath.rewrite(exact, EnumSet.of(ApproxMath.Function.SIN, ApproxMath.Function.LOG));
+        assertEquals(exact.toString(), approx.toString());
+
+        double x = 1.2345;
+        Map<String, Double> ctx = Map.of("x", x);
+        double expected = ApproxMath.sin(x) + Math.cos(x) + ApproxMath.log(x) + Math.sqrt(x);
+        assertEquals(expected, approx.eval(ctx), 0.0);
+        assertEquals(exact.eval(ctx), approx.eval(ctx), 1e-8);
+
+        double[] out = new double[1];
+        new BatchEvaluator(approx).evaluate(Map.of("x", new double[]{x}), out);
+        assertEquals(expected, out[0], 0.0);
+
+        // Domain checks still apply to approximated functions
+        Expr log = ApproxMath.rewrite(ExprEval.parse("log(x)"), EnumSet.allOf(ApproxMath.Function.class));
+        assertThrows(IllegalArgumentException.class, () -> log.eval(Map.of("x", -1.0)));
+
+        // The root solver finds the roots of the approximated function, not of the exact one
+        Expr equation = ApproxMath.rewrite(ExprEval.parse("sin(x) * log(x + 2) - y"),
+                EnumSet.allOf(ApproxMath.Function.class));
+        double[] y = {0.3, 0.7, 1.1};
+        RootSolver.Result result = new RootSolver(equation, "x").solve(Map.of("y", y), new double[]{0, 0, 0},
+                new double[]{1.5, 1.5, 1.5});
+        for (int i = 0; i < y.length; i++) {
+            assertTrue(result.converged()[i]);
+            assertEquals(0.0, equation.eval(Map.of("x", result.roots()[i], "y", y[i])), 1e-15);
+        }
+    }
+
+    // ─── 15. ADMISSION LIMITS AND COST ──────────────────────────────────────────
+
+    @Test
+    @DisplayName("ParseLimits: oversized input fails fast")
+    void testParseLimits() {
+        ParseLimits limits = new ParseLimits(100, 20, 10, 5);
+        assertEquals(7.0, ExprEval.parse("1 + 2 * 3", limits).eval(Map.of()), 0.0);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ExprEval.parse("x".repeat(101), limits));
+        assertTrue(ex.getMessage().contains("too long"));
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ExprEval.parse("1+1+1+1+1+1+1+1+1+1+1", limits));
+        assertTrue(ex.getMessage().contains("tokens"));
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ExprEval.parse("x*x*x*x*x*x", limits));
+        assertTrue(ex.getMessage().contains("nodes"));
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ExprEval.parse("((((((1))))))", limits));
+        assertTrue(ex.getMessage().contains("nested"));
+        assertThrows(IllegalArgumentException.class, () -> ExprEval.parse("-(-(-(-(-(-1)))))", limits));
+
+        // A megabyte of nesting is rejected without a StackOverflowError
+        String deep = "(".repeat(500_000) + "1" + ")".repeat(500_000);
+        assertThrows(IllegalArgumentException.class, () -> ExprEval.parse(deep, ParseLimits.UNTRUSTED));
+        assertThrows(IllegalArgumentException.class, () -> new ParseLimits(0, 1, 1, 1));
+    }
+
+    @Test
+    @DisplayName("ExprCost: weighted static cost estimate")
+    void testExprCost() {
+        assertEquals(1, ExprCost.estimate(ExprEval.parse("2")));
+        assertEquals(4, ExprCost.estimate(ExprEval.parse("x")));
+        assertEquals(6, ExprCost.estimate(ExprEval.parse("x + 1")));
+        assertTrue(ExprCost.estimate(ExprEval.parse("sin(x)")) > ExprCost.estimate(ExprEval.parse("abs(x)")));
+        assertTrue(ExprCost.estimate(ExprEval.parse("x ^ 3")) > ExprCost.estimate(ExprOptimizer.optimize(ExprEval.parse("x ^ 3"))));
+
+        Expr trig = ExprEval.parse("sin(x) + log(y)");
+        Expr approx = ApproxMath.rewrite(trig, EnumSet.allOf(ApproxMath.Function.class));
+        assertTrue(ExprCost.estimate(approx) < ExprCost.estimate(trig));
+    }
+
+    // ─── 16. INTERNING ──────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("ExprInterner: a catalog's formulas share leaves, names and leaf-only argument lists")
+    void testInterning() {
+        ExprInterner catalog = new ExprInterner();
+        BinaryExpr a = (BinaryExpr) ExprEval.parse("speed * 2.5 + clamp(speed, 0, 120)", ParseLimits.UNLIMITED, catalog);
+        BinaryExpr b = (BinaryExpr) ExprEval.parse("clamp(speed, 0, 120) - speed * 2.5", ParseLimits.UNLIMITED, catalog);
+        BinaryExpr productA = (BinaryExpr) a.left(), productB = (BinaryExpr) b.right();
+        FunctionCallExpr clampA = (FunctionCallExpr) a.right(), clampB = (FunctionCallExpr) b.left();
+
+        assertSame(productA.left(), productB.left());
+        assertSame(productA.right(), productB.right());
+        assertSame(clampA.funcName(), clampB.funcName());
+        assertSame(clampA.args(), clampB.args());
+
+        // Without a shared interner only constants and small integers are shared between parses
+        assertSame(ExprInterner.constant(ConstantExpr.Constant.PI), ExprEval.parse("pi"));
+        assertSame(ExprEval.parse("7"), ExprEval.parse("7"));
+        assertNotSame(ExprEval.parse("0.25"), ExprEval.parse("0.25"));
+        assertNotSame(ExprEval.parse("speed"), ExprEval.parse("speed"));
+        assertNotSame(ExprEval.parse("speed"), catalog.variable("speed"));
+
+        // Argument lists with inner nodes are compacted, not shared
+        FunctionCallExpr c = (FunctionCallExpr) ExprEval.parse("sin(x + 1)", ParseLimits.UNLIMITED, catalog);
+        FunctionCallExpr d = (FunctionCallExpr) ExprEval.parse("sin(x + 1)", ParseLimits.UNLIMITED, catalog);
+        assertNotSame(c.args(), d.args());
+        assertThrows(UnsupportedOperationException.class, () -> c.args().add(new NumberExpr(1)));
+
+        // Sharing does not change results or sign of zero
+        assertEquals(420.0, a.eval(Map.of("speed", 120.0)), 0.0);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(catalog.number(-0.0).value()));
+        assertNotSame(catalog.number(-0.0), catalog.number(0.0));
+    }
+
+    // ─── 17. FUSED REDUCTIONS ───────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("Reduction: fused sum/mean/min/max/argmax match the materialized results")
+    void testFusedReduction() {
+        Expr ast = ExprEval.parse("sin(x) * y - y ^ 2 / 10");
+        int rows = 5 * BatchEvaluator.CHUNK + 123;
+        double[] x = new double[rows], y = new double[rows], out = new double[rows];
+        Random random = new Random(11);
+        for (int i = 0; i < rows; i++) {
+            x[i] = random.nextDouble() * 10;
+            y[i] = random.nextGaussian() * 5;
+        }
+        Map<String, DoubleBuffer> columns = BatchEvaluator.wrap(Map.of("x", x, "y", y));
+        BatchEvaluator evaluator = new BatchEvaluator(ast);
+        evaluator.evaluate(Map.of("x", x, "y", y), out);
+        Reduction reduction = evaluator.reduce(columns, rows);
+
+        double sum = 0;
+        int argMin = 0, argMax = 0;
+        for (int i = 0; i < rows; i++) {
+            sum += out[i];
+            if (out[i] < out[argMin]) argMin = i;
+            if (out[i] > out[argMax]) argMax = i;
+        }
+        assertEquals(rows, reduction.count());
+        assertEquals(sum, reduction.sum(), 1e-9 * Math.abs(sum) + 1e-9);
+        assertEquals(sum / rows, reduction.mean(), 1e-9);
+        assertEquals(argMin, reduction.argMin());
+        assertEquals(argMax, reduction.argMax());
+        assertEquals(out[argMin], reduction.min(), 0.0);
+        assertEquals(out[argMax], reduction.max(), 0.0);
+
+        Reduction parallel = BatchEvaluator.reduceParallel(ast, columns, rows, 4);
+        assertEquals(reduction.count(), parallel.count());
+        assertEquals(reduction.sum(), parallel.sum(), 1e-12 * Math.abs(sum));
+        assertEquals(reduction.argMin(), parallel.argMin());
+        assertEquals(reduction.argMax(), parallel.argMax());
+    }
+
+    @Test
+    @DisplayName("Reduction: compensated summation, ties and NaN rows")
+    void testReductionEdgeCases() {
+        // Naive summation loses every 1.0 next to 1e16
+        int rows = 3000;
+        double[] v = new double[rows];
+        for (int i = 0; i < rows; i += 3) {
+            v[i] = 1e16;
+            v[i + 1] = 1.0;
+            v[i + 2] = -1e16;
+        }
+        Map<String, DoubleBuffer> columns = BatchEvaluator.wrap(Map.of("v", v));
+        assertEquals(1000.0, new BatchEvaluator(ExprEval.parse("v")).reduce(columns, rows).sum(), 0.0);
+        assertEquals(1000.0, BatchEvaluator.reduceParallel(ExprEval.parse("v"), columns, rows, 3).sum(), 0.0);
+
+        // First row wins ties; NaN rows are skipped by min/max but poison the sum
+        Reduction r = new Reduction();
+        r.add(new double[]{2, 5, Double.NaN, 5, -1, -1}, 6, 10);
+        assertEquals(11, r.argMax());
+        assertEquals(14, r.argMin());
+        assertTrue(Double.isNaN(r.sum()));
+
+        Reduction empty = new Reduction();
+        assertEquals(-1, empty.argMax());
+        assertTrue(Double.isNaN(empty.mean()));
+        empty.merge(r);
+        assertEquals(11, empty.argMax());
+    }
+
+    // ─── 18. TIERED EXECUTION ───────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("Tiered: promoted after the threshold, same results and errors as the tree")
+    void testTieredPromotion() {
+        String[] formulas = {
+                "sin(x) * y - y ^ 2 / 10 + clamp(x, -1, 1)",
+                "-x ^ 3 + log(abs(y) + 1) - sqrt(x * x) + pi * e",
+                "x / (y - y)", "0 / (x - x)", "tan(x) + cos(y)"
+        };
+        Random random = new Random(5);
+        for (String formula : formulas) {
+            Expr tree = ExprEval.parse(formula);
+            for (Expr ast : List.of(tree, ExprOptimizer.optimize(tree),
+                    ApproxMath.rewrite(tree, EnumSet.allOf(ApproxMath.Function.class)))) {
+                TieredExpr tiered = new TieredExpr(ast, 3, Runnable::run);
+                for (int i = 0; i < 10; i++) {
+                    Map<String, Double> vars = Map.of("x", random.nextGaussian() * 3, "y", random.nextGaussian());
+                    assertEquals(ast.eval(vars), tiered.eval(vars), 0.0, formula);
+                    assertEquals(i >= 2, tiered.isCompiled(), formula);
+                }
+                assertEquals(ast.toString(), tiered.toString());
+            }
+        }
+
+        TieredExpr tiered = new TieredExpr(ExprEval.parse("sqrt(x) + z"), 1, Runnable::run);
+        tiered.eval(Map.of("x", 1.0, "z", 0.0));
+        assertTrue(tiered.isCompiled());
+        Exception e = assertThrows(IllegalArgumentException.class, () -> tiered.eval(Map.of("x", -1.0, "z", 0.0)));
+        assertTrue(e.getMessage().contains("negative"));
+        e = assertThrows(IllegalArgumentException.class, () -> tiered.eval(Map.of("x", 1.0)));
+        assertEquals("Unknown variable: z", e.getMessage());
+
+        // The non-throwing path stays on the tree and reports tree nodes
+        EvalStatus status = new EvalStatus();
+        assertTrue(Double.isNaN(tiered.eval(Map.of("x", -1.0, "z", 0.0), status)));
+        assertEquals(EvalStatus.Code.NEGATIVE_SQRT, status.code());
+
+        // Trees that always fail are never compiled
+        TieredExpr unknown = new TieredExpr(ExprEval.parse("foo(x)"), 1, Runnable::run);
+        assertThrows(IllegalArgumentException.class, () -> unknown.eval(Map.of("x", 1.0)));
+        assertFalse(unknown.isCompiled());
+        assertThrows(IllegalArgumentException.class, () -> new TieredExpr(ExprEval.parse("x"), 0, Runnable::run));
+
+        // A variable map that evaluates another compiled formula re-enters on the same thread
+        TieredExpr inner = new TieredExpr(ExprEval.parse("a + b + c + d"), 1, Runnable::run);
+        TieredExpr outer = new TieredExpr(ExprEval.parse("x * 100 + y"), 1, Runnable::run);
+        Map<String, Double> base = Map.of("x", 1.0, "a", 1.0, "b", 2.0, "c", 3.0, "d", 4.0);
+        Map<String, Double> derived = new HashMap<>(base) {
+            @Override
+            public Double get(Object key){
+                return "y".equals(key) ? inner.eval(base) : super.get(key);
+            }
+
+            @Override
+            public boolean containsKey(Object key){
+                return "y".equals(key) || super.containsKey(key);
+            }
+        };
+        inner.eval(base);
+        outer.eval(derived);
+        assertTrue(inner.isCompiled() && outer.isCompiled());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(110.0, outer.eval(derived), 0.0);
+        }
+        assertEquals(outer.tree().eval(derived), outer.eval(derived), 0.0);
+    }
+
+    @Test
+    @DisplayName("Tiered: cold compiled forms are evicted by sweeps, wrapper works everywhere")
+    void testTieredEviction() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        TieredExpr tiered = new TieredExpr(ExprEval.parse("x ^ 2 + y"), 5, queued::add);
+        Map<String, Double> vars = Map.of("x", 3.0, "y", 1.0);
+        for (int i = 0; i < 8; i++) tiered.eval(vars);
+        // Compiled in the background: one task, tree used until it has run
+        assertEquals(1, queued.size());
+        assertFalse(tiered.isCompiled());
+        queued.getFirst().run();
+        assertTrue(tiered.isCompiled());
+        assertEquals(10.0, tiered.eval(vars), 0.0);
+
+        assertFalse(tiered.sweep());   // used since it was compiled
+        tiered.eval(vars);
+        assertFalse(tiered.sweep());   // still used
+        assertTrue(tiered.sweep());    // a whole period without evaluations: cold
+        assertFalse(tiered.isCompiled());
+        assertEquals(10.0, tiered.eval(vars), 0.0);
+
+        // Counting restarts with every sweep: 4 + 4 interpreted evaluations do not reach 5
+        queued.clear();
+        tiered.sweep();
+        for (int i = 0; i < 4; i++) tiered.eval(vars);
+        tiered.sweep();
+        for (int i = 0; i < 4; i++) tiered.eval(vars);
+        assertTrue(queued.isEmpty());
+        tiered.eval(vars);
+        assertEquals(1, queued.size());
+
+        // Usable wherever a parsed tree is
+        assertEquals(Set.of("x", "y"), ExprEval.extractVariables(tiered));
+        assertEquals(ExprCost.estimate(tiered.tree()), ExprCost.estimate(tiered));
+        double[] out = new double[3];
+        new BatchEvaluator(tiered).evaluate(Map.of("x", new double[]{1, 2, 3}, "y", new double[]{0, 0, 1}), out);
+        assertArrayEquals(new double[]{1, 4, 10}, out, 0.0);
+        assertEquals(10.0, ExprOptimizer.optimize(tiered).eval(vars), 0.0);
+        RootSolver.Result roots = new RootSolver(new TieredExpr(ExprEval.parse("x ^ 2 - y")), "x")
+                .solve(Map.of("y", new double[]{4}), new double[]{0}, new double[]{5});
+        assertEquals(2.0, roots.roots()[0], 1e-12);
+
+        // The default wrapper compiles on the shared background thread
+        TieredExpr background = new TieredExpr(ExprEval.parse("x * y"));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!background.isCompiled() && System.nanoTime() < deadline) background.eval(vars);
+        assertTrue(background.isCompiled());
+        assertEquals(3.0, background.eval(vars), 0.0);
+    }
+
     // ─── HELPER METHODS FOR TESTS ───────────────────────────────────────────────
 
     /** Evaluate expression without variables */
@@ -274,4 +863,14 @@ public class ExprEvalTests {
     private double parseEval(String expr, Map<String, Double> ctx) {
         return ExprEval.parse(expr).eval(ctx);
     }
+
+    /** Relative error check; exact zeros must match exactly */
+    private void assertRelative(double expected, double actual, double bound) {
+        if (expected == 0) {
+            assertEquals(0.0, actual, 0.0);
+        } else {
+            assertTrue(Math.abs(actual - expected) <= bound * Math.abs(expected),
+                    "expected " + expected + ", but was " + actual);
+        }
+    }
 }